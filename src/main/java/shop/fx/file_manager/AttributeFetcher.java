@@ -0,0 +1,137 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the attributes that cost a system call per file and aren't in a listing's
+ * {@link FileEntry}: creation time, owner and permissions. Rows ask for them when they
+ * come into view and withdraw the request when they are reused for another entry, so
+ * only rows the user actually sees are ever read; the newest requests go first. Reads
+ * happen in batches on one background thread and arrive on the FX thread once per
+ * pulse.
+ */
+public class AttributeFetcher {
+
+    private static final int BATCH_SIZE = 256;
+
+    public record Attributes(long created, String owner, String permissions) {
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "attribute-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // FX thread only
+    private final Map<Path, Attributes> fetched = new HashMap<>();
+    // Guarded by itself
+    private final LinkedHashSet<Path> pending = new LinkedHashSet<>();
+    private boolean draining;
+    private final boolean posix = Path.of("").getFileSystem().supportedFileAttributeViews().contains("posix");
+    private final Runnable onFetched;
+    // Guarded by pending
+    private BatchPublisher<Map.Entry<Path, Attributes>> publisher;
+
+    // onFetched runs on the FX thread after each batch is stored
+    public AttributeFetcher(Runnable onFetched) {
+        this.onFetched = onFetched;
+        this.publisher = newPublisher();
+    }
+
+    // FX thread only; null until fetched
+    public Attributes get(Path path) {
+        return fetched.get(path);
+    }
+
+    // FX thread only
+    public void request(Path path) {
+        if (fetched.containsKey(path)) {
+            return;
+        }
+        synchronized (pending) {
+            pending.add(path);
+            if (!draining) {
+                draining = true;
+                worker.execute(this::drain);
+            }
+        }
+    }
+
+    // The row showing path moved on before it was read
+    public void withdraw(Path path) {
+        synchronized (pending) {
+            pending.remove(path);
+        }
+    }
+
+    // Forgets everything, e.g. when another folder is shown; FX thread only
+    public void clear() {
+        BatchPublisher<Map.Entry<Path, Attributes>> old;
+        synchronized (pending) {
+            pending.clear();
+            old = publisher;
+            publisher = newPublisher();
+        }
+        // Batches already read for the old folder are dropped with their publisher
+        old.clear();
+        fetched.clear();
+    }
+
+    private BatchPublisher<Map.Entry<Path, Attributes>> newPublisher() {
+        return new BatchPublisher<>(Integer.MAX_VALUE, batch -> {
+            for (Map.Entry<Path, Attributes> entry : batch) {
+                fetched.put(entry.getKey(), entry.getValue());
+            }
+            onFetched.run();
+        });
+    }
+
+    private void drain() {
+        while (true) {
+            List<Path> batch = new ArrayList<>(BATCH_SIZE);
+            BatchPublisher<Map.Entry<Path, Attributes>> target;
+            synchronized (pending) {
+                while (batch.size() < BATCH_SIZE && !pending.isEmpty()) {
+                    batch.add(pending.removeLast());
+                }
+                if (batch.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                target = publisher;
+            }
+            for (Path path : batch) {
+                target.offer(new AbstractMap.SimpleImmutableEntry<>(path, read(path)));
+            }
+        }
+    }
+
+    private Attributes read(Path path) {
+        try {
+            if (posix) {
+                PosixFileAttributes attrs = Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new Attributes(attrs.creationTime().toMillis(), attrs.owner().getName(),
+                        PosixFilePermissions.toString(attrs.permissions()));
+            }
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new Attributes(attrs.creationTime().toMillis(), Files.getOwner(path, LinkOption.NOFOLLOW_LINKS).getName(),
+                    Files.isWritable(path) ? "read/write" : "read-only");
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return new Attributes(-1, "", "");
+        }
+    }
+}
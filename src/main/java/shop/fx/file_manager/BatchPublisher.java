@@ -0,0 +1,105 @@
+package shop.fx.file_manager;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Collects items offered from background threads and hands them to the FX thread
+ * in one batch per pulse, so a fast producer never floods the scene graph with
+ * one change event per item. The pulse timer only runs while items are queued.
+ */
+public class BatchPublisher<T> {
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> consumer;
+    private final int maxBatchSize;
+    private final AnimationTimer timer;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+    private boolean running;
+
+    public BatchPublisher(int maxBatchSize, Consumer<List<T>> consumer) {
+        this.maxBatchSize = maxBatchSize;
+        this.consumer = consumer;
+        this.timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drain(BatchPublisher.this.maxBatchSize);
+                if (queue.isEmpty()) {
+                    BatchPublisher.this.stop();
+                }
+            }
+        };
+    }
+
+    // Safe to call from any thread
+    public void offer(T item) {
+        if (closed) {
+            return;
+        }
+        queue.add(item);
+        schedule();
+    }
+
+    // FX thread only
+    public void start() {
+        if (!running && !closed) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    // FX thread only: publishes whatever is still queued and stops the pulse timer
+    public void flush() {
+        drain(Integer.MAX_VALUE);
+        stop();
+    }
+
+    // FX thread only: pauses publishing; queued items wait for the next offer, start or flush
+    public void stop() {
+        if (running) {
+            running = false;
+            timer.stop();
+        }
+        scheduled.set(false);
+        // An item offered while we were stopping would otherwise wait for the next offer
+        if (!queue.isEmpty() && !closed) {
+            schedule();
+        }
+    }
+
+    // FX thread only: drops anything queued and ignores later offers
+    public void clear() {
+        closed = true;
+        stop();
+        queue.clear();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::start);
+        }
+    }
+
+    private void drain(int limit) {
+        List<T> batch = new ArrayList<>(Math.min(limit, Math.max(queue.size(), 16)));
+        T item;
+        while (batch.size() < limit && (item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+}
@@ -10,13 +10,13 @@ import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
-import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.Objects;
 
 public class CellFactorySetup {
 
+    // Twice the icon size, so thumbnails stay sharp on HiDPI screens
+    private static final int THUMBNAIL_SIZE = 32;
+
     private final FileManagerUI ui;
     private final FileSystemUtils fileSystemUtils;
     private final FileManagerController controller;
@@ -36,6 +36,7 @@ public class CellFactorySetup {
             private final Label extensionInfo = new Label();
             private final GridPane content = new GridPane();
             private boolean isEditing = false;
+            private Thumbnails.Request thumbnailRequest;
 
             {
                 ColumnConstraints iconCol = new ColumnConstraints(24);
@@ -58,6 +59,8 @@ public class CellFactorySetup {
 
                 icon.getStyleClass().add("file-icon");
                 icon.setFitHeight(16);
+                // Thumbnails aren't square, so fit them into the icon's box
+                icon.setFitWidth(16);
                 icon.setPreserveRatio(true);
                 name.getStyleClass().add("file-name");
                 nameField.getStyleClass().add("file-name-field");
@@ -92,84 +95,43 @@ public class CellFactorySetup {
             }
 
             @Override
-            protected void updateItem(Path item, boolean empty) {
+            protected void updateItem(FileEntry item, boolean empty) {
                 super.updateItem(item, empty);
+                if (thumbnailRequest != null) {
+                    // This cell shows something else now, so its old thumbnail is no longer wanted
+                    thumbnailRequest.cancel();
+                    thumbnailRequest = null;
+                }
                 if (empty || item == null) {
                     setGraphic(null);
                     setText(null);
                     setStyle("");
                     isEditing = false;
-                    System.out.println("Updating empty cell at index: " + getIndex());
                 } else {
-                    String fileName = item.getFileName() != null ? item.getFileName().toString() : item.toString();
-                    boolean isDirectory = false;
-                    try {
-                        BasicFileAttributes attrs = Files.readAttributes(item, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
-                        isDirectory = attrs.isDirectory();
-                        System.out.println("Path: " + item + ", isDirectory: " + isDirectory);
-                    } catch (AccessDeniedException e) {
-                        System.err.println("Access denied checking attributes for: " + item);
-                    } catch (IOException e) {
-                        System.err.println("IOException checking attributes for: " + item + ", Message: " + e.getMessage());
-                    }
-
-                    try {
-                        String extension = "";
-                        if (isDirectory) {
-                            Image folderImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/folder_64.png")));
-                            if (folderImage.isError()) {
-                                System.err.println("Failed to load folder_64.png");
-                            }
-                            icon.setImage(folderImage);
-                            name.setText(fileName);
-                            nameField.setText(fileName);
-                            sizeInfo.setText("");
-                        } else {
-                            Image fileImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/file_64.png")));
-                            if (fileImage.isError()) {
-                                System.err.println("Failed to load file_64.png");
-                            }
-                            icon.setImage(fileImage);
-                            name.setText(fileName);
-                            nameField.setText(fileName);
-                            try {
-                                long size = Files.size(item);
-                                sizeInfo.setText(fileSystemUtils.formatSize(size));
-                            } catch (AccessDeniedException e) {
-                                sizeInfo.setText("(Access Denied)");
-                            }
-                            int dotIndex = fileName.lastIndexOf('.');
-                            if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
-                                extension = fileName.substring(dotIndex + 1).toLowerCase();
-                            }
-                        }
-                        extensionInfo.setText(extension);
-                    } catch (AccessDeniedException e) {
-                        System.err.println("Access denied for: " + item);
-                        Image lockedImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/lock_64.png")));
-                        if (lockedImage.isError()) {
-                            System.err.println("Failed to load lock_64.png");
-                        }
+                    String fileName = item.name();
+                    name.setText(fileName);
+                    nameField.setText(fileName);
+                    if (item.access() != FileEntry.Access.READABLE) {
+                        Image lockedImage = IconRegistry.get("lock_64.png", 16);
                         icon.setImage(lockedImage);
-                        name.setText(fileName);
-                        nameField.setText(fileName);
-                        sizeInfo.setText("(Access Denied)");
-                        extensionInfo.setText("");
-                    } catch (IOException e) {
-                        System.err.println("IOException for: " + item + ", Message: " + e.getMessage());
-                        Image lockedImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/lock_64.png")));
-                        if (lockedImage.isError()) {
-                            System.err.println("Failed to load lock_64.png");
+                        sizeInfo.setText(item.access() == FileEntry.Access.DENIED ? "(Access Denied)" : "(Error)");
+                    } else if (item.directory()) {
+                        Image folderImage = IconRegistry.get("folder_64.png", 16);
+                        icon.setImage(folderImage);
+                        long folderSize = controller.getFolderSize(item.path());
+                        sizeInfo.setText(folderSize >= 0 ? fileSystemUtils.formatSize(folderSize) : "");
+                    } else {
+                        Image fileImage = IconRegistry.get("file_64.png", 16);
+                        icon.setImage(fileImage);
+                        if (Thumbnails.supports(item)) {
+                            showThumbnail(item);
                         }
-                        icon.setImage(lockedImage);
-                        name.setText(fileName);
-                        nameField.setText(fileName);
-                        sizeInfo.setText("(Error)");
-                        extensionInfo.setText("");
+                        sizeInfo.setText(fileSystemUtils.formatSize(item.size()));
                     }
+                    extensionInfo.setText(item.extension());
 
                     // Set icon opacity based on cut state
-                    icon.setOpacity(controller.getCutPath() != null && controller.getCutPath().equals(item) ? 0.5 : 1.0);
+                    icon.setOpacity(controller.isCut(item.path()) ? 0.5 : 1.0);
 
                     if (!isEditing) {
                         content.getChildren().remove(nameField);
@@ -189,7 +151,20 @@ public class CellFactorySetup {
                     } else {
                         setStyle("-fx-background-radius: 0;");
                     }
-                    System.out.println("Updated cell at index: " + index + " with item: " + fileName);
+                }
+            }
+
+            private void showThumbnail(FileEntry item) {
+                Thumbnails thumbnails = controller.getThumbnails();
+                Image thumbnail = thumbnails.cached(item, THUMBNAIL_SIZE);
+                if (thumbnail != null) {
+                    icon.setImage(thumbnail);
+                } else {
+                    thumbnailRequest = thumbnails.request(item, THUMBNAIL_SIZE, image -> {
+                        if (item.equals(getItem())) {
+                            icon.setImage(image);
+                        }
+                    });
                 }
             }
 
@@ -210,7 +185,7 @@ public class CellFactorySetup {
             }
 
             @Override
-            public void commitEdit(Path item) {
+            public void commitEdit(FileEntry item) {
                 if (!isEditing) {
                     return;
                 }
@@ -220,15 +195,7 @@ public class CellFactorySetup {
                     String newName = nameField.getText().trim();
                     System.out.println("Committing edit for: " + item + ", new name: " + newName);
                     if (!newName.isEmpty() && !newName.equals(name.getText())) {
-                        try {
-                            Path newPath = item.getParent().resolve(newName);
-                            Files.move(item, newPath, StandardCopyOption.REPLACE_EXISTING);
-                            System.out.println("Renamed " + item + " to " + newPath);
-                            controller.loadDirectory(controller.getCurrentPath());
-                        } catch (IOException e) {
-                            System.err.println("Error renaming: " + e.getMessage());
-                            controller.showErrorDialog("Error", "Error renaming file or folder: " + e.getMessage());
-                        }
+                        controller.renameEntry(item, newName);
                     }
                 }
                 content.getChildren().remove(nameField);
@@ -254,6 +221,14 @@ public class CellFactorySetup {
             }
         });
 
+        // Renames are applied through the controller; the list's items are a read-only filtered view,
+        // so the default handler that writes the edited item back must not run
+        ui.getFileListView().setOnEditCommit(_ -> {
+        });
+
+        ui.getDetailView().setFolderSizes(controller::getFolderSize);
+        ui.getDetailView().setOnRename(controller::renameEntry);
+
         ui.getDriveListView().setCellFactory(_ -> new ListCell<>() {
             @Override
             protected void updateItem(DriveInfo item, boolean empty) {
@@ -269,32 +244,19 @@ public class CellFactorySetup {
                     driveIcon.getStyleClass().add("drive-icon");
                     driveIcon.setFitHeight(16);
                     driveIcon.setPreserveRatio(true);
-                    Image driveImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/hdd_64.png")));
-                    if (driveImage.isError()) {
-                        System.err.println("Failed to load hdd_64.png");
-                    }
+                    Image driveImage = IconRegistry.get("hdd_64.png", 16);
                     driveIcon.setImage(driveImage);
 
                     VBox textAndProgress = new VBox(8);
-                    Label driveName = new Label(item.getDisplayName());
+                    Label driveName = new Label();
                     driveName.getStyleClass().add("drive-name");
+                    driveName.textProperty().bind(item.displayNameProperty());
                     ProgressBar progressBar = new ProgressBar();
                     progressBar.getStyleClass().add("drive-progress");
                     progressBar.setMaxWidth(160);
+                    fileSystemUtils.bindCapacity(item, progressBar, null);
                     textAndProgress.getChildren().addAll(driveName, progressBar);
 
-                    try {
-                        FileStore store = Files.getFileStore(item.getPath());
-                        long totalSpace = store.getTotalSpace();
-                        long freeSpace = store.getUsableSpace();
-                        long usedSpace = totalSpace - freeSpace;
-                        double progress = totalSpace > 0 ? (double) usedSpace / totalSpace : 0;
-                        progressBar.setProgress(progress);
-                    } catch (IOException e) {
-                        System.err.println("Error calculating progress for drive: " + item.getDisplayName());
-                        progressBar.setProgress(0);
-                    }
-
                     ColumnConstraints iconCol = new ColumnConstraints(24);
                     iconCol.setHalignment(HPos.LEFT);
                     ColumnConstraints textCol = new ColumnConstraints();
@@ -0,0 +1,318 @@
+package shop.fx.file_manager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One directory's entries packed into a few shared arrays instead of an object graph
+ * per entry: names as UTF-8 bytes back to back with their end offsets, sizes and
+ * modification times in long arrays, and the folder and access bits in a byte. The
+ * directory's path is held once; an entry's own name and path are only built when
+ * something asks for them, which in a large folder means the rows on screen and the
+ * ones an operation touches.
+ *
+ * <p>Storage comes in chunks that never move once written, growing from small to
+ * large so tiny folders stay small. The loader can therefore hand out rows while it is
+ * still appending: everything a row reads is written before the row is returned.
+ * {@link #get} makes a new {@link Row} each time; rows for the same entry are equal.
+ */
+public final class CompactListing extends AbstractList<FileEntry> implements RandomAccess {
+
+    private static final int FIRST_CHUNK_ROWS = 16;
+    private static final int MAX_CHUNK_ROWS = 4096;
+    // Name space per row in the first chunk; later ones go by the names seen so far
+    private static final int NAME_BYTES_PER_ROW = 32;
+    // Object headers and array lengths per chunk
+    private static final int CHUNK_OVERHEAD_BYTES = 128;
+    private static final int ROW_BYTES = 24;
+
+    private static final int DIRECTORY = 1;
+    // The name is plain ASCII, so filtering can compare its bytes directly
+    private static final int ASCII = 2;
+    private static final int ACCESS_SHIFT = 2;
+    private static final FileEntry.Access[] ACCESS = FileEntry.Access.values();
+
+    private static final class Chunk {
+        private final Path directory;
+        private final byte[] names;
+        // Row i's name ends here and starts where row i - 1's ends
+        private final int[] nameEnds;
+        private final long[] sizes;
+        private final long[] modified;
+        private final byte[] flags;
+        // Paths that don't survive a round trip through their name, e.g. names not in UTF-8; rarely allocated
+        private Path[] paths;
+        private int count;
+        private int nameLength;
+
+        Chunk(Path directory, int rows, int nameBytes) {
+            this.directory = directory;
+            this.names = new byte[nameBytes];
+            this.nameEnds = new int[rows];
+            this.sizes = new long[rows];
+            this.modified = new long[rows];
+            this.flags = new byte[rows];
+        }
+
+        int nameStart(int index) {
+            return index == 0 ? 0 : nameEnds[index - 1];
+        }
+
+        long bytes() {
+            long bytes = CHUNK_OVERHEAD_BYTES + names.length + 21L * nameEnds.length;
+            return paths == null ? bytes : bytes + 4L * paths.length;
+        }
+    }
+
+    /**
+     * An entry of a compact listing: just its chunk and position, 24 bytes. Name, path,
+     * sort key and extension are derived on each call, so callers that need one often
+     * should keep it.
+     */
+    public static final class Row implements FileEntry {
+        private final Chunk chunk;
+        private final int index;
+
+        private Row(Chunk chunk, int index) {
+            this.chunk = chunk;
+            this.index = index;
+        }
+
+        @Override
+        public Path path() {
+            Path[] paths = chunk.paths;
+            Path path = paths != null ? paths[index] : null;
+            return path != null ? path : chunk.directory.resolve(name());
+        }
+
+        @Override
+        public String name() {
+            int start = chunk.nameStart(index);
+            return new String(chunk.names, start, chunk.nameEnds[index] - start, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String lowerName() {
+            return name().toLowerCase();
+        }
+
+        @Override
+        public String sortKey() {
+            return ListingSorter.naturalKey(lowerName());
+        }
+
+        @Override
+        public boolean directory() {
+            return (chunk.flags[index] & DIRECTORY) != 0;
+        }
+
+        @Override
+        public long size() {
+            return chunk.sizes[index];
+        }
+
+        @Override
+        public long lastModified() {
+            return chunk.modified[index];
+        }
+
+        @Override
+        public String extension() {
+            return !directory() && access() == Access.READABLE ? FileEntry.extensionOf(name()) : "";
+        }
+
+        @Override
+        public Access access() {
+            return ACCESS[chunk.flags[index] >> ACCESS_SHIFT];
+        }
+
+        // Matches ASCII names against ASCII queries without building the name
+        @Override
+        public boolean nameContains(String lowerQuery) {
+            if ((chunk.flags[index] & ASCII) == 0 || !isAscii(lowerQuery)) {
+                return FileEntry.super.nameContains(lowerQuery);
+            }
+            int length = lowerQuery.length();
+            if (length == 0) {
+                return true;
+            }
+            byte[] names = chunk.names;
+            int start = chunk.nameStart(index);
+            int last = chunk.nameEnds[index] - length;
+            char first = lowerQuery.charAt(0);
+            for (int i = start; i <= last; i++) {
+                if (toLower(names[i]) != first) {
+                    continue;
+                }
+                int j = 1;
+                while (j < length && toLower(names[i + j]) == lowerQuery.charAt(j)) {
+                    j++;
+                }
+                if (j == length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // What this row keeps alive on top of its share of the chunk
+        long bytes() {
+            return ROW_BYTES + 21L + chunk.nameEnds[index] - chunk.nameStart(index);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Row row && row.chunk == chunk && row.index == index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(chunk) * 31 + index;
+        }
+
+        @Override
+        public String toString() {
+            return name();
+        }
+    }
+
+    /**
+     * Packs a directory's entries as they are listed. Not thread safe, but the rows
+     * {@link #add} returns may be published to other threads right away.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private Chunk chunk;
+        private int size;
+        private long nameBytes;
+
+        public Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        public Row add(FileEntry entry) {
+            String name = entry.name();
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (chunk == null || chunk.count == chunk.nameEnds.length || chunk.nameLength + bytes.length > chunk.names.length) {
+                int rows = Math.min(MAX_CHUNK_ROWS, Math.max(FIRST_CHUNK_ROWS, size));
+                // A little over the average so far, so chunks rarely close on their names before their rows
+                int perRow = size == 0 ? NAME_BYTES_PER_ROW : (int) (nameBytes / size) + 4;
+                chunk = new Chunk(directory, rows, Math.max(rows * perRow, bytes.length));
+                chunks.add(chunk);
+            }
+            int index = chunk.count;
+            System.arraycopy(bytes, 0, chunk.names, chunk.nameLength, bytes.length);
+            chunk.nameLength += bytes.length;
+            nameBytes += bytes.length;
+            chunk.nameEnds[index] = chunk.nameLength;
+            chunk.sizes[index] = entry.size();
+            chunk.modified[index] = entry.lastModified();
+            int flags = entry.access().ordinal() << ACCESS_SHIFT;
+            if (entry.directory()) {
+                flags |= DIRECTORY;
+            }
+            if (isAscii(name)) {
+                flags |= ASCII;
+            }
+            chunk.flags[index] = (byte) flags;
+            if (!entry.path().equals(directory.resolve(name))) {
+                if (chunk.paths == null) {
+                    chunk.paths = new Path[chunk.nameEnds.length];
+                }
+                chunk.paths[index] = entry.path();
+            }
+            chunk.count++;
+            size++;
+            return new Row(chunk, index);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // The entries added so far
+        public CompactListing build() {
+            Chunk[] built = chunks.toArray(new Chunk[0]);
+            int[] starts = new int[built.length];
+            int start = 0;
+            for (int i = 0; i < built.length; i++) {
+                starts[i] = start;
+                start += built[i].count;
+            }
+            return new CompactListing(directory, built, starts, size);
+        }
+    }
+
+    private final Path directory;
+    private final Chunk[] chunks;
+    // Index of each chunk's first row
+    private final int[] starts;
+    private final int size;
+
+    private CompactListing(Path directory, Chunk[] chunks, int[] starts, int size) {
+        this.directory = directory;
+        this.chunks = chunks;
+        this.starts = starts;
+        this.size = size;
+    }
+
+    public static CompactListing of(Path directory, List<FileEntry> entries) {
+        if (entries instanceof CompactListing listing) {
+            return listing;
+        }
+        Builder builder = new Builder(directory);
+        for (FileEntry entry : entries) {
+            builder.add(entry);
+        }
+        return builder.build();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public FileEntry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int chunk = Arrays.binarySearch(starts, index);
+        if (chunk < 0) {
+            chunk = -chunk - 2;
+        }
+        return new Row(chunks[chunk], index - starts[chunk]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Heap held by the packed entries, not counting rows handed out
+    public long bytes() {
+        long bytes = CHUNK_OVERHEAD_BYTES + 4L * starts.length;
+        for (Chunk chunk : chunks) {
+            bytes += chunk.bytes();
+        }
+        return bytes;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+}
@@ -0,0 +1,306 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Copies files and folders into a target folder. The whole tree is planned first so
+ * progress and ETA are known up front; folders are then created in walk order and
+ * files copied with {@link FileChannel#transferTo}, which lets the kernel move the
+ * data without passing it through the Java heap. Large files are copied in chunks on
+ * the job's own thread so pause and cancel take effect mid-file, while small files,
+ * where per-file latency dominates, are spread over a shared worker pool.
+ */
+public class CopyJob extends FileJob {
+
+    private static final long SMALL_FILE_SIZE = 1024 * 1024;
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+    // Smaller chunks keep throttled I/O smooth instead of bursty
+    private static final long THROTTLED_CHUNK_SIZE = 512 * 1024;
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final ExecutorService smallFileWorkers = Executors.newFixedThreadPool(8, runnable -> {
+        Thread thread = new Thread(runnable, "copy-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record CopyItem(Path source, Path target, long size, boolean directory, boolean link, FileTime modified) {
+    }
+
+    private final List<Path> sources;
+    private final Path targetDirectory;
+
+    public CopyJob(List<Path> sources, Path targetDirectory) {
+        this("Copying", sources, targetDirectory);
+    }
+
+    protected CopyJob(String verb, List<Path> sources, Path targetDirectory) {
+        super(sources.size() == 1
+                ? verb + " " + sources.getFirst().getFileName() + " to " + targetDirectory
+                : verb + " " + sources.size() + " items to " + targetDirectory);
+        this.sources = List.copyOf(sources);
+        this.targetDirectory = targetDirectory;
+    }
+
+    @Override
+    public List<Path> getPaths() {
+        List<Path> paths = new ArrayList<>(sources);
+        paths.add(targetDirectory);
+        return paths;
+    }
+
+    protected List<Path> getSources() {
+        return sources;
+    }
+
+    protected Path getTargetDirectory() {
+        return targetDirectory;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        copyAll(sources);
+        return null;
+    }
+
+    // Called after a file has been copied in full, on whichever thread copied it
+    protected void fileCopied(Path source, Path target, long size, boolean link) throws IOException {
+    }
+
+    // Called for each copied folder once everything below it is done, deepest first
+    protected void directoryCopied(Path source, Path target) throws IOException {
+    }
+
+    protected void copyAll(List<Path> sources) throws Exception {
+        updateMessage("Preparing...");
+        List<CopyItem> plan = new ArrayList<>();
+        List<Path> targets = new ArrayList<>();
+        for (Path source : sources) {
+            checkpoint();
+            Path target = targetFor(source);
+            if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && target.startsWith(source)) {
+                addError("Cannot copy a folder into itself: " + source);
+                continue;
+            }
+            targets.add(target);
+            plan(source, target, plan);
+        }
+        long totalBytes = 0;
+        long totalFiles = 0;
+        for (CopyItem item : plan) {
+            if (!item.directory()) {
+                totalBytes += item.size();
+                totalFiles++;
+            }
+        }
+        setTotals(totalBytes, totalFiles);
+
+        // Parents come before children in walk order
+        for (CopyItem item : plan) {
+            if (item.directory()) {
+                checkpoint();
+                try {
+                    Files.createDirectories(item.target());
+                } catch (IOException e) {
+                    addError("Cannot create " + item.target() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        List<Future<?>> pending = new ArrayList<>();
+        for (CopyItem item : plan) {
+            if (item.directory()) {
+                continue;
+            }
+            checkpoint();
+            if (item.size() < SMALL_FILE_SIZE) {
+                inFlight.acquire();
+                pending.add(smallFileWorkers.submit(() -> {
+                    try {
+                        if (!isCancelled()) {
+                            copyFile(item, false);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                pending.removeIf(Future::isDone);
+            } else {
+                copyFile(item, true);
+            }
+        }
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    throw new CancellationException();
+                }
+                addError("Cannot copy: " + e.getCause());
+            }
+        }
+        checkpoint();
+
+        // Copying files into a folder touches its mtime, and a read-only mode would have blocked
+        // the copy, so restore folders last, deepest first
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            CopyItem item = plan.get(i);
+            if (item.directory()) {
+                copyPermissions(item.source(), item.target());
+                try {
+                    Files.setLastModifiedTime(item.target(), item.modified());
+                } catch (IOException e) {
+                    // Not worth reporting
+                }
+                try {
+                    directoryCopied(item.source(), item.target());
+                } catch (IOException e) {
+                    addError("Cannot finish " + item.source() + ": " + e.getMessage());
+                }
+            }
+        }
+        for (Path target : targets) {
+            addChange(ListingChange.added(target));
+        }
+        report(true);
+    }
+
+    private void plan(Path source, Path target, List<CopyItem> plan) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                checkpoint();
+                plan.add(new CopyItem(dir, resolve(target, source, dir), 0, true, false, attrs.lastModifiedTime()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                plan.add(new CopyItem(file, resolve(target, source, file), attrs.isSymbolicLink() ? 0 : attrs.size(),
+                        false, attrs.isSymbolicLink(), attrs.lastModifiedTime()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                addError("Cannot read " + file + ": " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyFile(CopyItem item, boolean large) {
+        try {
+            throttle(0, 1);
+            if (item.link()) {
+                Files.copy(item.source(), item.target(), StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                fileCopied(item.source(), item.target(), 0, true);
+                addFile();
+                return;
+            }
+            String name = item.source().getFileName().toString();
+            try (FileChannel in = FileChannel.open(item.source(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(item.target(), StandardOpenOption.WRITE,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    if (large) {
+                        checkpoint();
+                    }
+                    long chunk = Math.min(isThrottled() ? THROTTLED_CHUNK_SIZE : CHUNK_SIZE, size - position);
+                    throttle(chunk, 1);
+                    long copied = in.transferTo(position, chunk, out);
+                    if (copied <= 0) {
+                        // The source shrank while we were copying it
+                        break;
+                    }
+                    position += copied;
+                    addBytes(copied);
+                    if (large) {
+                        setCurrent(name, position, size);
+                    }
+                }
+            }
+            copyPermissions(item.source(), item.target());
+            Files.setLastModifiedTime(item.target(), item.modified());
+            fileCopied(item.source(), item.target(), item.size(), false);
+            if (!large) {
+                setCurrent(name, 0, 0);
+            }
+            addFile();
+        } catch (CancellationException e) {
+            deletePartial(item.target());
+            throw e;
+        } catch (IOException e) {
+            if (isCancelled()) {
+                // Cancel interrupts the job thread, which closes the channel mid-transfer
+                deletePartial(item.target());
+                throw new CancellationException();
+            }
+            addError("Cannot copy " + item.source() + ": " + e.getMessage());
+        }
+    }
+
+    protected Path targetFor(Path source) throws IOException {
+        Path target = targetDirectory.resolve(source.getFileName().toString());
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS) || !Files.isSameFile(source, target)) {
+            // As before, an existing item with the same name is overwritten
+            return target;
+        }
+        String name = source.getFileName().toString();
+        int dot = Files.isDirectory(source) ? -1 : name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        target = targetDirectory.resolve(base + " - Copy" + extension);
+        for (int counter = 2; Files.exists(target, LinkOption.NOFOLLOW_LINKS); counter++) {
+            target = targetDirectory.resolve(base + " - Copy (" + counter + ")" + extension);
+        }
+        return target;
+    }
+
+    private static Path resolve(Path target, Path source, Path path) {
+        Path resolved = target;
+        for (Path segment : source.relativize(path)) {
+            if (!segment.toString().isEmpty()) {
+                resolved = resolved.resolve(segment.toString());
+            }
+        }
+        return resolved;
+    }
+
+    // Keeps e.g. the executable bit, which the channel copy doesn't carry over
+    private static void copyPermissions(Path source, Path target) {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not a POSIX file system on one side; the target keeps its default mode
+        }
+    }
+
+    private static void deletePartial(Path target) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            System.err.println("Error removing partial copy: " + target + ", Message: " + e.getMessage());
+        }
+    }
+}
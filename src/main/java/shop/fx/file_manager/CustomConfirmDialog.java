@@ -0,0 +1,109 @@
+package shop.fx.file_manager;
+
+import com.catwithawand.borderlessscenefx.scene.BorderlessScene;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.*;
+import javafx.scene.paint.Color;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import java.util.Objects;
+
+/**
+ * Asks before something that can't be undone, styled like {@link CustomErrorDialog}.
+ * Closing the dialog any way other than the confirm button counts as cancel.
+ */
+public class CustomConfirmDialog {
+    private final Stage stage;
+    private boolean confirmed;
+
+    public CustomConfirmDialog(Stage owner, String title, String message, String confirmText) {
+        stage = new Stage();
+        stage.initModality(Modality.APPLICATION_MODAL);
+        stage.initOwner(owner);
+        stage.setTitle(title);
+
+        BorderPane root = new BorderPane();
+        root.getStyleClass().add("dialog-root");
+
+        HBox header = createHeader(title);
+        header.setAlignment(Pos.CENTER);
+        root.setTop(header);
+        header.getStyleClass().add("dialog-header");
+
+        VBox content = new VBox(10);
+        content.getStyleClass().add("dialog-content");
+        Label messageLabel = new Label(message);
+        messageLabel.getStyleClass().add("dialog-message");
+        messageLabel.setAlignment(Pos.CENTER_LEFT);
+        messageLabel.setWrapText(true);
+        Image warningImage = IconRegistry.get("delete_64.png", 32);
+        ImageView dialogIcon = new ImageView(warningImage);
+        dialogIcon.setFitHeight(32);
+        dialogIcon.setPreserveRatio(true);
+        messageLabel.setGraphic(dialogIcon);
+
+        Button cancelButton = new Button("Cancel");
+        cancelButton.getStyleClass().add("dialog-button");
+        cancelButton.setCancelButton(true);
+        // The safe choice has focus, so Enter doesn't confirm by accident
+        cancelButton.setDefaultButton(true);
+        cancelButton.setOnAction(_ -> stage.close());
+        Button confirmButton = new Button(confirmText);
+        confirmButton.getStyleClass().addAll("dialog-button", "dialog-confirm-button");
+        confirmButton.setOnAction(_ -> {
+            confirmed = true;
+            stage.close();
+        });
+        HBox buttons = new HBox(10, cancelButton, confirmButton);
+        buttons.setAlignment(Pos.CENTER_RIGHT);
+
+        content.getChildren().addAll(messageLabel, buttons);
+        content.setAlignment(Pos.CENTER);
+        content.setPadding(new Insets(10, 20, 10, 20));
+        root.setCenter(content);
+
+        BorderlessScene scene = new BorderlessScene(stage, StageStyle.TRANSPARENT, root, Color.TRANSPARENT);
+        scene.setMoveControl(header);
+        stage.setWidth(420);
+        stage.setHeight(160);
+        scene.getStylesheets().add(Objects.requireNonNull(getClass().getResource("styles.css")).toExternalForm());
+        stage.setScene(scene);
+        stage.setOnShown(_ -> cancelButton.requestFocus());
+    }
+
+    private HBox createHeader(String title) {
+        HBox header = new HBox();
+        header.getStyleClass().add("header");
+
+        Label titleLabel = new Label(title);
+        titleLabel.getStyleClass().add("dialog-title");
+
+        Button closeButton = new Button();
+        Image closeImage = IconRegistry.get("close_64.png", 16);
+        ImageView closeIcon = new ImageView(closeImage);
+        closeIcon.setFitHeight(16);
+        closeIcon.setPreserveRatio(true);
+        closeButton.setGraphic(closeIcon);
+        closeButton.getStyleClass().addAll("window-button", "close-button");
+        closeButton.setOnAction(_ -> stage.close());
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        header.getChildren().addAll(titleLabel, spacer, closeButton);
+
+        return header;
+    }
+
+    // True only if the user pressed the confirm button
+    public boolean showAndWait() {
+        stage.showAndWait();
+        return confirmed;
+    }
+}
@@ -43,10 +43,7 @@ public class CustomErrorDialog {
         content.getChildren().add(messageLabel);
         content.setAlignment(Pos.CENTER);
         content.setPadding(new Insets(10, 20, 10, 20));
-        Image DataLogix = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/error_64.png")));
-        if (DataLogix.isError()) {
-            System.err.println("Failed to load close_64.png");
-        }
+        Image DataLogix = IconRegistry.get("error_64.png", 32);
         ImageView dialogIcon = new ImageView(DataLogix);
         dialogIcon.setFitHeight(32);
         dialogIcon.setPreserveRatio(true);
@@ -73,10 +70,7 @@ public class CustomErrorDialog {
 
         // Close button
         Button closeButton = new Button();
-        Image closeImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/close_64.png")));
-        if (closeImage.isError()) {
-            System.err.println("Failed to load close_64.png");
-        }
+        Image closeImage = IconRegistry.get("close_64.png", 16);
         ImageView closeIcon = new ImageView(closeImage);
         closeIcon.setFitHeight(16);
         closeIcon.setPreserveRatio(true);
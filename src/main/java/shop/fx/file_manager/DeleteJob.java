@@ -0,0 +1,143 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deletes files and folders permanently. Each folder is streamed once: its files are
+ * deleted as they are listed, its subfolders are deleted in parallel by their own
+ * fork/join tasks, and the folder itself goes last. Only the subfolders of folders
+ * currently being deleted are held in memory, never the whole tree. Symlinks are
+ * deleted, not followed.
+ */
+public class DeleteJob extends FileJob {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.min(8, 2 * Runtime.getRuntime().availableProcessors()));
+    // One low-priority worker, for deletes nobody is waiting on
+    private static final ForkJoinPool backgroundPool = new ForkJoinPool(1, forkJoinPool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("background-delete");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }, null, false);
+
+    private final List<Path> scope;
+    private final Supplier<List<Path>> paths;
+    private final ForkJoinPool workers;
+    private final AtomicLong found = new AtomicLong();
+    private long startNanos;
+
+    public DeleteJob(List<Path> paths) {
+        this(paths.size() == 1 ? "Deleting " + paths.getFirst().getFileName() : "Deleting " + paths.size() + " items",
+                List.copyOf(paths), () -> paths, pool);
+    }
+
+    private DeleteJob(String title, List<Path> scope, Supplier<List<Path>> paths, ForkJoinPool workers) {
+        super(title);
+        this.scope = scope;
+        this.paths = paths;
+        this.workers = workers;
+    }
+
+    // Deletes on a single low-priority thread so it doesn't compete with the user's own work.
+    // The paths are looked up on that thread too, somewhere under the scope.
+    public static DeleteJob inBackground(String title, List<Path> scope, Supplier<List<Path>> paths) {
+        return new DeleteJob(title, List.copyOf(scope), paths, backgroundPool);
+    }
+
+    @Override
+    public List<Path> getPaths() {
+        return scope;
+    }
+
+    @Override
+    protected Void call() {
+        startNanos = System.nanoTime();
+        for (Path path : List.copyOf(paths.get())) {
+            checkpoint();
+            found.incrementAndGet();
+            boolean removed = Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                    ? workers.invoke(new DeleteAction(path))
+                    : deleteEntry(path);
+            if (removed) {
+                addChange(ListingChange.removed(path));
+            }
+        }
+        report(true);
+        return null;
+    }
+
+    @Override
+    protected String progressMessage(long done) {
+        long deletedCount = getFilesDone();
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 0.001);
+        return String.format("%,d deleted, %,d found and waiting (%,.0f items/s)",
+                deletedCount, Math.max(0, found.get() - deletedCount), deletedCount / seconds);
+    }
+
+    // Returns false if the entry is still there
+    private boolean deleteEntry(Path path) {
+        throttle(0, 1);
+        try {
+            Files.delete(path);
+            addFile();
+            return true;
+        } catch (NoSuchFileException e) {
+            // Already gone
+            return true;
+        } catch (IOException e) {
+            addError("Cannot delete " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Deletes one folder's contents, then the folder; returns false if anything is left
+    private class DeleteAction extends RecursiveTask<Boolean> {
+        private final Path directory;
+
+        DeleteAction(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected Boolean compute() {
+            checkpoint();
+            boolean complete = true;
+            List<DeleteAction> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    checkpoint();
+                    found.incrementAndGet();
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        DeleteAction action = new DeleteAction(child);
+                        action.fork();
+                        subdirectories.add(action);
+                    } else {
+                        complete &= deleteEntry(child);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return true;
+            } catch (IOException e) {
+                addError("Cannot open " + directory + ": " + e.getMessage());
+                return false;
+            }
+            for (DeleteAction action : subdirectories) {
+                complete &= action.join();
+            }
+            // A folder with leftovers can't go; its leftovers were reported already
+            return complete && deleteEntry(directory);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package shop.fx.file_manager;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The file list as a table with resizable columns. Name, size, modified and type come
+ * straight from each {@link FileEntry}; created, owner and permissions need a read per
+ * file, so each row asks the {@link AttributeFetcher} for them only while it shows an
+ * entry, and the cells fill in when the batch arrives. Clicking a sortable column's
+ * header changes the listing's sort order rather than sorting the table itself.
+ */
+public class DetailView extends TableView<FileEntry> {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final AttributeFetcher attributes = new AttributeFetcher(this::refresh);
+    private final TableColumn<FileEntry, FileEntry> nameColumn = new TableColumn<>("Name");
+    private final TableColumn<FileEntry, FileEntry> sizeColumn;
+    private final TableColumn<FileEntry, FileEntry> modifiedColumn;
+    private final TableColumn<FileEntry, FileEntry> typeColumn;
+    // A folder's computed total size, or -1 while unknown
+    private Function<Path, Long> folderSize = _ -> -1L;
+    // Applies a new name typed into a name cell
+    private BiConsumer<FileEntry, String> onRename = (_, _) -> {
+    };
+
+    public DetailView() {
+        getStyleClass().add("detail-view");
+        setEditable(true);
+        setTableMenuButtonVisible(true);
+
+        nameColumn.setPrefWidth(280);
+        nameColumn.setCellFactory(_ -> new NameCell((entry, newName) -> onRename.accept(entry, newName)));
+        sizeColumn = column("Size", 90, entry -> {
+            if (entry.access() != FileEntry.Access.READABLE) {
+                return entry.access() == FileEntry.Access.DENIED ? "(Access Denied)" : "(Error)";
+            }
+            if (entry.directory()) {
+                long size = folderSize.apply(entry.path());
+                return size >= 0 ? FileSystemUtils.formatBytes(size) : "";
+            }
+            return FileSystemUtils.formatBytes(entry.size());
+        });
+        modifiedColumn = column("Modified", 130, entry -> entry.lastModified() > 0 ? formatTime(entry.lastModified()) : "");
+        typeColumn = column("Type", 70, entry -> entry.directory() ? "Folder" : entry.extension());
+        TableColumn<FileEntry, FileEntry> createdColumn = column("Created", 130, entry -> {
+            AttributeFetcher.Attributes fetched = attributes.get(entry.path());
+            return fetched == null ? "" : fetched.created() > 0 ? formatTime(fetched.created()) : "";
+        });
+        TableColumn<FileEntry, FileEntry> ownerColumn = column("Owner", 90, entry -> {
+            AttributeFetcher.Attributes fetched = attributes.get(entry.path());
+            return fetched == null ? "" : fetched.owner();
+        });
+        TableColumn<FileEntry, FileEntry> permissionsColumn = column("Permissions", 90, entry -> {
+            AttributeFetcher.Attributes fetched = attributes.get(entry.path());
+            return fetched == null ? "" : fetched.permissions();
+        });
+        for (TableColumn<FileEntry, FileEntry> column : List.of(createdColumn, ownerColumn, permissionsColumn)) {
+            column.setSortable(false);
+        }
+        nameColumn.setCellValueFactory(features -> new ReadOnlyObjectWrapper<>(features.getValue()));
+        getColumns().setAll(List.of(nameColumn, sizeColumn, modifiedColumn, typeColumn, createdColumn, ownerColumn, permissionsColumn));
+
+        // Rows, not cells, drive fetching: one request per visible entry, withdrawn when the row is reused
+        setRowFactory(_ -> new TableRow<>() {
+            @Override
+            protected void updateItem(FileEntry item, boolean empty) {
+                FileEntry previous = getItem();
+                super.updateItem(item, empty);
+                if (previous != null && (item == null || !previous.path().equals(item.path()))) {
+                    attributes.withdraw(previous.path());
+                }
+                if (!empty && item != null) {
+                    attributes.request(item.path());
+                }
+            }
+        });
+    }
+
+    private static TableColumn<FileEntry, FileEntry> column(String title, double width, Function<FileEntry, String> text) {
+        TableColumn<FileEntry, FileEntry> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(features -> new ReadOnlyObjectWrapper<>(features.getValue()));
+        column.setCellFactory(_ -> new TableCell<>() {
+            @Override
+            protected void updateItem(FileEntry item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : text.apply(item));
+            }
+        });
+        return column;
+    }
+
+    private static String formatTime(long millis) {
+        return DATE_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+
+    // The sort field behind a column header, or null for columns that can't be sorted
+    public SortField sortFieldOf(TableColumn<FileEntry, ?> column) {
+        if (column == nameColumn) {
+            return SortField.NAME;
+        } else if (column == sizeColumn) {
+            return SortField.SIZE;
+        } else if (column == modifiedColumn) {
+            return SortField.MODIFIED;
+        } else if (column == typeColumn) {
+            return SortField.TYPE;
+        }
+        return null;
+    }
+
+    public TableColumn<FileEntry, FileEntry> columnOf(SortField field) {
+        return switch (field) {
+            case NAME -> nameColumn;
+            case SIZE -> sizeColumn;
+            case MODIFIED -> modifiedColumn;
+            case TYPE -> typeColumn;
+        };
+    }
+
+    public void setFolderSizes(Function<Path, Long> folderSize) {
+        this.folderSize = folderSize;
+    }
+
+    public void setOnRename(BiConsumer<FileEntry, String> onRename) {
+        this.onRename = onRename;
+    }
+
+    public TableColumn<FileEntry, FileEntry> getNameColumn() {
+        return nameColumn;
+    }
+
+    // Drops fetched attributes, e.g. when another folder is shown
+    public void clearAttributes() {
+        attributes.clear();
+    }
+
+    private static class NameCell extends TableCell<FileEntry, FileEntry> {
+        private final ImageView icon = new ImageView();
+        private final TextField nameField = new TextField();
+        private final BiConsumer<FileEntry, String> onRename;
+
+        NameCell(BiConsumer<FileEntry, String> onRename) {
+            this.onRename = onRename;
+            icon.setFitHeight(16);
+            icon.setFitWidth(16);
+            icon.setPreserveRatio(true);
+            nameField.getStyleClass().add("file-name-field");
+            nameField.setOnAction(event -> {
+                commitEdit(getItem());
+                event.consume();
+            });
+            nameField.setOnKeyPressed(event -> {
+                if (event.getCode() == KeyCode.ESCAPE) {
+                    cancelEdit();
+                    event.consume();
+                }
+            });
+            nameField.focusedProperty().addListener((_, _, isFocused) -> {
+                if (!isFocused && isEditing()) {
+                    commitEdit(getItem());
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(FileEntry item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(null);
+                setGraphic(null);
+                return;
+            }
+            String iconName = item.access() != FileEntry.Access.READABLE ? "lock_64.png"
+                    : item.directory() ? "folder_64.png" : "file_64.png";
+            icon.setImage(IconRegistry.get(iconName, 16));
+            if (isEditing()) {
+                setText(null);
+                setGraphic(nameField);
+            } else {
+                setText(item.name());
+                setGraphic(icon);
+            }
+        }
+
+        @Override
+        public void startEdit() {
+            super.startEdit();
+            if (isEditing() && getItem() != null) {
+                nameField.setText(getItem().name());
+                setText(null);
+                setGraphic(nameField);
+                nameField.requestFocus();
+                nameField.selectAll();
+            }
+        }
+
+        @Override
+        public void commitEdit(FileEntry item) {
+            if (!isEditing()) {
+                return;
+            }
+            String newName = nameField.getText().trim();
+            // Skip the table's own commit, which would write the entry back into the read-only listing
+            cancelEdit();
+            if (item != null && !newName.isEmpty() && !newName.equals(item.name())) {
+                onRename.accept(item, newName);
+            }
+        }
+
+        @Override
+        public void cancelEdit() {
+            super.cancelEdit();
+            FileEntry item = getItem();
+            if (item != null) {
+                setText(item.name());
+                setGraphic(icon);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of recent directory listings. Every cached directory is registered
+ * with the {@link DirectoryWatcher} and dropped as soon as anything in it changes,
+ * so a hit can be shown without going back to disk. Listings are held as
+ * {@link CompactListing}s and bounded both by the number of directories and by the
+ * heap they use.
+ */
+public class DirectoryCache implements DirectoryWatcher.Listener {
+
+    private static final int MAX_DIRECTORIES = 32;
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    // Rough cost of a standalone entry: the record, its Path and its strings
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private record CachedListing(List<FileEntry> entries, long bytes) {
+    }
+
+    private final DirectoryWatcher watcher;
+    private final LinkedHashMap<Path, CachedListing> listings = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    public DirectoryCache(DirectoryWatcher watcher) {
+        this.watcher = watcher;
+        watcher.addListener(this);
+    }
+
+    public synchronized List<FileEntry> get(Path directory) {
+        CachedListing listing = listings.get(directory);
+        if (listing == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return listing.entries();
+    }
+
+    // Called from the listing thread once a full listing is available. listedModified is the
+    // directory's mtime from before the listing started; if it moved, the listing may be stale.
+    public void put(Path directory, List<FileEntry> entries, FileTime listedModified) {
+        CompactListing listing = CompactListing.of(directory, entries);
+        long bytes = listing.bytes();
+        if (bytes > MAX_BYTES || !watcher.watch(directory)) {
+            return;
+        }
+        try {
+            if (!Files.getLastModifiedTime(directory).equals(listedModified)) {
+                System.out.println("Not caching " + directory + ": changed while listing");
+                watcher.unwatch(directory);
+                return;
+            }
+        } catch (IOException e) {
+            watcher.unwatch(directory);
+            return;
+        }
+        synchronized (this) {
+            CachedListing previous = listings.put(directory, new CachedListing(listing, bytes));
+            if (previous != null) {
+                totalBytes -= previous.bytes();
+                watcher.unwatch(directory);
+            }
+            totalBytes += bytes;
+            evict();
+        }
+    }
+
+    public synchronized void invalidate(Path directory) {
+        CachedListing removed = listings.remove(directory);
+        if (removed != null) {
+            totalBytes -= removed.bytes();
+            watcher.unwatch(directory);
+            System.out.println("Invalidated cached listing: " + directory);
+        }
+    }
+
+    @Override
+    public void onChange(Path directory, WatchEvent.Kind<?> kind, Path child) {
+        invalidate(directory);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Path, CachedListing>> iterator = listings.entrySet().iterator();
+        while ((listings.size() > MAX_DIRECTORIES || totalBytes > MAX_BYTES) && iterator.hasNext()) {
+            Map.Entry<Path, CachedListing> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue().bytes();
+            watcher.unwatch(eldest.getKey());
+        }
+    }
+
+    // Used to budget the listings kept by NavigationHistory, which hold rows of compact listings
+    // and standalone entries for files that changed since
+    static long estimateBytes(List<FileEntry> entries) {
+        if (entries instanceof CompactListing listing) {
+            return listing.bytes();
+        }
+        long bytes = 0;
+        for (FileEntry entry : entries) {
+            if (entry instanceof CompactListing.Row row) {
+                bytes += row.bytes();
+            } else {
+                bytes += ENTRY_OVERHEAD_BYTES + 3L * entry.name().length();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Lists directories on a worker thread, reading each entry's attributes there, and
+ * publishes the entries to the FX thread in batches, once per pulse. Entries are packed
+ * into a {@link CompactListing} as they are read, so what is published are its rows.
+ * Only one listing is active at a time; starting a new one cancels the previous.
+ */
+public class DirectoryLoader {
+
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "directory-loader");
+        thread.setDaemon(true);
+        // Ahead of file jobs, which run below normal priority
+        thread.setPriority(Thread.NORM_PRIORITY + 1);
+        return thread;
+    });
+    private final DirectoryCache cache;
+    private ListingTask currentTask;
+    private BatchPublisher<FileEntry> currentPublisher;
+
+    public DirectoryLoader(DirectoryCache cache) {
+        this.cache = cache;
+    }
+
+    public Task<Integer> load(Path directory, Consumer<List<FileEntry>> onBatch, Runnable onLoaded, Consumer<Throwable> onFailed) {
+        cancel();
+        BatchPublisher<FileEntry> publisher = new BatchPublisher<>(MAX_BATCH_SIZE, onBatch);
+        ListingTask task = new ListingTask(directory, publisher, cache);
+        // A task superseded or cancelled before its state event arrives must not touch the
+        // listing that replaced it
+        task.setOnSucceeded(_ -> {
+            if (currentTask != task) {
+                return;
+            }
+            publisher.flush();
+            finish();
+            System.out.println("Loaded " + task.getValue() + " items from: " + directory);
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+        });
+        task.setOnFailed(_ -> {
+            if (currentTask != task) {
+                return;
+            }
+            publisher.flush();
+            finish();
+            if (onFailed != null) {
+                onFailed.accept(task.getException());
+            }
+        });
+        currentTask = task;
+        currentPublisher = publisher;
+        publisher.start();
+        executor.execute(task);
+        return task;
+    }
+
+    public void cancel() {
+        if (currentTask != null) {
+            System.out.println("Cancelling listing of: " + currentTask.directory);
+            currentTask.cancel();
+            currentPublisher.clear();
+            currentTask = null;
+            currentPublisher = null;
+        }
+    }
+
+    public boolean isLoading() {
+        return currentTask != null;
+    }
+
+    private void finish() {
+        currentTask = null;
+        currentPublisher = null;
+    }
+
+    private static class ListingTask extends Task<Integer> {
+        private final Path directory;
+        private final BatchPublisher<FileEntry> publisher;
+        private final DirectoryCache cache;
+
+        ListingTask(Path directory, BatchPublisher<FileEntry> publisher, DirectoryCache cache) {
+            this.directory = directory;
+            this.publisher = publisher;
+            this.cache = cache;
+        }
+
+        @Override
+        protected Integer call() throws IOException {
+            updateMessage("Loading " + directory + "...");
+            FileTime listedModified = Files.getLastModifiedTime(directory);
+            CompactListing.Builder entries = new CompactListing.Builder(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    if (isCancelled()) {
+                        return entries.size();
+                    }
+                    publisher.offer(entries.add(FileEntry.of(path)));
+                    if (entries.size() % PROGRESS_INTERVAL == 0) {
+                        updateMessage("Loading... " + entries.size() + " items");
+                    }
+                }
+            } catch (AccessDeniedException e) {
+                System.err.println("Access denied to: " + directory);
+                throw e;
+            }
+            if (cache != null) {
+                cache.put(directory, entries.build(), listedModified);
+            }
+            updateMessage(entries.size() + " items");
+            return entries.size();
+        }
+    }
+}
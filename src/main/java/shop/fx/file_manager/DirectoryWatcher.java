@@ -0,0 +1,143 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shares one {@link WatchService} between everything that needs to follow changes
+ * to a directory. Registrations are reference counted, so independent users can
+ * watch and unwatch the same directory. Listeners are called on the watcher thread.
+ */
+public class DirectoryWatcher {
+
+    public interface Listener {
+        // kind is OVERFLOW with a null child when the whole directory must be considered changed
+        void onChange(Path directory, WatchEvent.Kind<?> kind, Path child);
+    }
+
+    private static class Registration {
+        private final WatchKey key;
+        private int references;
+
+        Registration(WatchKey key) {
+            this.key = key;
+        }
+    }
+
+    private final WatchService watchService;
+    private final Map<Path, Registration> registrations = new HashMap<>();
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public DirectoryWatcher() {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Directory watching not available: " + e.getMessage());
+        }
+        this.watchService = service;
+        if (watchService != null) {
+            Thread thread = new Thread(this::processEvents, "directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Returns false when the directory cannot be watched; callers must then not rely on change events
+    public synchronized boolean watch(Path directory) {
+        if (watchService == null) {
+            return false;
+        }
+        Registration registration = registrations.get(directory);
+        if (registration == null) {
+            try {
+                WatchKey key = directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                registration = new Registration(key);
+                registrations.put(directory, registration);
+                directories.put(key, directory);
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("Cannot watch directory: " + directory + ", Message: " + e.getMessage());
+                return false;
+            }
+        }
+        registration.references++;
+        return true;
+    }
+
+    public synchronized void unwatch(Path directory) {
+        Registration registration = registrations.get(directory);
+        if (registration != null && --registration.references <= 0) {
+            registrations.remove(directory);
+            directories.remove(registration.key);
+            registration.key.cancel();
+        }
+    }
+
+    public synchronized boolean isWatched(Path directory) {
+        return registrations.containsKey(directory);
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory;
+            synchronized (this) {
+                directory = directories.get(key);
+            }
+            if (directory == null) {
+                key.pollEvents();
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Path child = event.context() instanceof Path name ? directory.resolve(name) : null;
+                notifyListeners(directory, event.kind(), child);
+            }
+            if (!key.reset()) {
+                // The directory itself was deleted or became inaccessible
+                synchronized (this) {
+                    if (directories.remove(key) != null) {
+                        registrations.remove(directory);
+                    }
+                }
+                notifyListeners(directory, StandardWatchEventKinds.OVERFLOW, null);
+            }
+        }
+    }
+
+    private void notifyListeners(Path directory, WatchEvent.Kind<?> kind, Path child) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onChange(directory, kind, child);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling change in: " + directory + ", Message: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scans a volume into a {@link UsageTree}. Each folder is listed by its own fork/join
+ * task so sibling subtrees are read in parallel; symlinks are not followed and other
+ * filesystems mounted below the root are skipped. Only folders take space in the
+ * tree, so memory grows with the number of folders, not files.
+ */
+public class DiskUsageScan extends Task<UsageTree> {
+
+    private static final int PROGRESS_INTERVAL = 8192;
+
+    // Listing is I/O bound, so run more walkers than there are cores
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.min(16, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private final Path root;
+    private final AtomicLong scannedFiles = new AtomicLong();
+    private final AtomicLong scannedBytes = new AtomicLong();
+    private final AtomicLong unreadable = new AtomicLong();
+    private Object rootDevice;
+    private long startNanos;
+
+    public DiskUsageScan(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    protected UsageTree call() {
+        startNanos = System.nanoTime();
+        updateMessage("Scanning " + root + "...");
+        rootDevice = deviceOf(root);
+        UsageTree tree = new UsageTree(root);
+        pool.invoke(new ScanAction(tree, UsageTree.ROOT, root));
+        if (isCancelled()) {
+            return null;
+        }
+        tree.finish();
+        String summary = progressMessage(tree) + String.format(", %.1f MB in memory", tree.footprint() / (1024.0 * 1024.0))
+                + (unreadable.get() > 0 ? ", " + unreadable.get() + " folders skipped" : "");
+        System.out.println("Scanned " + root + ": " + summary);
+        updateMessage(summary);
+        return tree;
+    }
+
+    private String progressMessage(UsageTree tree) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 0.001);
+        return String.format("%,d files in %,d folders, %s (%,.0f files/s)", scannedFiles.get(), tree.size(),
+                FileSystemUtils.formatBytes(scannedBytes.get()), scannedFiles.get() / seconds);
+    }
+
+    private static Object deviceOf(Path path) {
+        try {
+            return Files.getAttribute(path, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private class ScanAction extends RecursiveAction {
+        private final UsageTree tree;
+        private final int id;
+        private final Path directory;
+
+        ScanAction(UsageTree tree, int id, Path directory) {
+            this.tree = tree;
+            this.id = id;
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (DiskUsageScan.this.isCancelled()) {
+                return;
+            }
+            List<ScanAction> subdirectories = new ArrayList<>();
+            long bytes = 0;
+            int fileCount = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (DiskUsageScan.this.isCancelled()) {
+                        return;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (rootDevice != null && !Objects.equals(rootDevice, deviceOf(child))) {
+                            // Another filesystem is mounted here
+                            continue;
+                        }
+                        String name = child.getFileName().toString();
+                        subdirectories.add(new ScanAction(tree, tree.add(id, name), child));
+                    } else if (!attrs.isSymbolicLink()) {
+                        long size = attrs.size();
+                        bytes += size;
+                        fileCount++;
+                        if (size > tree.largeFileThreshold()) {
+                            tree.offerLargeFile(id, child.getFileName().toString(), size);
+                        }
+                        scannedBytes.addAndGet(size);
+                        if (scannedFiles.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                            updateMessage(progressMessage(tree));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                unreadable.incrementAndGet();
+            }
+            tree.addFiles(id, bytes, fileCount);
+            invokeAll(subdirectories);
+        }
+    }
+}
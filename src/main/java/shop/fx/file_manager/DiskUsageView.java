@@ -0,0 +1,264 @@
+package shop.fx.file_manager;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The disk-usage analyzer: a treemap of one folder's subfolders, sized by their
+ * totals, next to lists of the largest folders and files below it. Clicking a tile
+ * or a folder in the list goes into that folder; Up goes back out and Open shows the
+ * folder in the file list, as does double-clicking a file. The view shows the scan's
+ * progress until its {@link UsageTree} is ready.
+ */
+public class DiskUsageView extends BorderPane {
+
+    private static final int MAX_TILES = 40;
+    private static final int LIST_SIZE = 30;
+
+    private final Pane treemap = new Pane();
+    private final Label pathLabel = new Label();
+    private final Label statusLabel = new Label();
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Button upButton = new Button("Up");
+    private final Button openButton = new Button("Open");
+    private final ListView<String> largestFolders = new ListView<>();
+    private final ListView<String> largestFiles = new ListView<>();
+    private final List<Integer> folderIds = new ArrayList<>();
+    private final List<Path> filePaths = new ArrayList<>();
+    private final Consumer<Path> onOpen;
+    private UsageTree tree;
+    private int current = UsageTree.ROOT;
+
+    // A tile is either a subfolder or the files directly in the shown folder
+    private record Tile(int folder, String name, long bytes) {
+    }
+
+    public DiskUsageView(DiskUsageScan scan, Consumer<Path> onOpen) {
+        this.onOpen = onOpen;
+        getStyleClass().add("usage-view");
+
+        upButton.getStyleClass().add("transfer-button");
+        upButton.setDisable(true);
+        upButton.setOnAction(_ -> {
+            if (tree != null && current != UsageTree.ROOT) {
+                show(tree.parent(current));
+            }
+        });
+        openButton.getStyleClass().add("transfer-button");
+        openButton.setDisable(true);
+        openButton.setOnAction(_ -> onOpen.accept(tree.path(current)));
+        pathLabel.getStyleClass().add("usage-path");
+        statusLabel.getStyleClass().add("transfer-message");
+        statusLabel.textProperty().bind(scan.messageProperty());
+        progressBar.getStyleClass().add("transfer-progress");
+        Region spacer = new Region();
+        HBox header = new HBox(10, upButton, openButton, pathLabel, spacer, statusLabel, progressBar);
+        header.setAlignment(Pos.CENTER_LEFT);
+        header.setPadding(new Insets(0, 0, 10, 0));
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        setTop(header);
+
+        treemap.getStyleClass().add("usage-treemap");
+        treemap.setMinSize(0, 0);
+        treemap.widthProperty().addListener(_ -> layoutTiles());
+        treemap.heightProperty().addListener(_ -> layoutTiles());
+        setCenter(treemap);
+
+        largestFolders.getStyleClass().add("usage-list");
+        largestFolders.setOnMouseClicked(_ -> {
+            int index = largestFolders.getSelectionModel().getSelectedIndex();
+            if (index >= 0 && index < folderIds.size()) {
+                show(folderIds.get(index));
+            }
+        });
+        largestFiles.getStyleClass().add("usage-list");
+        largestFiles.setOnMouseClicked(event -> {
+            int index = largestFiles.getSelectionModel().getSelectedIndex();
+            if (event.getClickCount() == 2 && index >= 0 && index < filePaths.size()) {
+                onOpen.accept(filePaths.get(index).getParent());
+            }
+        });
+        Label foldersLabel = new Label("Folders holding the most data");
+        foldersLabel.getStyleClass().add("drives-label");
+        Label filesLabel = new Label("Largest files");
+        filesLabel.getStyleClass().add("drives-label");
+        VBox side = new VBox(6, foldersLabel, largestFolders, filesLabel, largestFiles);
+        side.setPrefWidth(320);
+        side.setPadding(new Insets(0, 0, 0, 10));
+        VBox.setVgrow(largestFolders, Priority.ALWAYS);
+        VBox.setVgrow(largestFiles, Priority.ALWAYS);
+        setRight(side);
+        setPadding(new Insets(10, 20, 20, 20));
+
+        scan.setOnSucceeded(_ -> {
+            progressBar.setVisible(false);
+            tree = scan.getValue();
+            if (tree != null) {
+                show(UsageTree.ROOT);
+            }
+        });
+        scan.setOnFailed(_ -> {
+            progressBar.setVisible(false);
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Scan failed: " + scan.getException().getMessage());
+        });
+    }
+
+    private void show(int folder) {
+        current = folder;
+        upButton.setDisable(folder == UsageTree.ROOT);
+        openButton.setDisable(false);
+        pathLabel.setText(tree.path(folder) + " — " + FileSystemUtils.formatBytes(tree.totalBytes(folder))
+                + String.format(", %,d files", tree.totalFiles(folder)));
+
+        folderIds.clear();
+        List<String> folderRows = new ArrayList<>();
+        for (int id : tree.largestFolders(folder, LIST_SIZE)) {
+            if (tree.ownBytes(id) == 0) {
+                break;
+            }
+            folderIds.add(id);
+            folderRows.add(FileSystemUtils.formatBytes(tree.ownBytes(id)) + "  " + tree.path(id));
+        }
+        largestFolders.getItems().setAll(folderRows);
+
+        filePaths.clear();
+        List<String> fileRows = new ArrayList<>();
+        for (UsageTree.LargeFile file : tree.largestFiles(folder)) {
+            if (fileRows.size() == LIST_SIZE) {
+                break;
+            }
+            Path path = tree.path(file.folder()).resolve(file.name());
+            filePaths.add(path);
+            fileRows.add(FileSystemUtils.formatBytes(file.size()) + "  " + path);
+        }
+        largestFiles.getItems().setAll(fileRows);
+        layoutTiles();
+    }
+
+    private void layoutTiles() {
+        treemap.getChildren().clear();
+        if (tree == null || treemap.getWidth() <= 0 || treemap.getHeight() <= 0) {
+            return;
+        }
+        List<Tile> tiles = new ArrayList<>();
+        long rest = 0;
+        int restCount = 0;
+        for (int child : tree.children(current)) {
+            if (tree.totalBytes(child) == 0) {
+                break;
+            }
+            if (tiles.size() < MAX_TILES) {
+                tiles.add(new Tile(child, tree.name(child), tree.totalBytes(child)));
+            } else {
+                rest += tree.totalBytes(child);
+                restCount++;
+            }
+        }
+        if (tree.ownBytes(current) > 0) {
+            tiles.add(new Tile(-1, "Files", tree.ownBytes(current)));
+        }
+        if (rest > 0) {
+            tiles.add(new Tile(-1, restCount + " more folders", rest));
+        }
+        tiles.sort((a, b) -> Long.compare(b.bytes(), a.bytes()));
+        squarify(tiles, 0, 0, treemap.getWidth(), treemap.getHeight());
+    }
+
+    // Squarified treemap layout: fills rows along the short side while that keeps tiles closer to square
+    private void squarify(List<Tile> tiles, double x, double y, double width, double height) {
+        double total = 0;
+        for (Tile tile : tiles) {
+            total += tile.bytes();
+        }
+        double scale = total > 0 ? width * height / total : 0;
+        int start = 0;
+        while (start < tiles.size() && width > 0 && height > 0) {
+            double side = Math.min(width, height);
+            int end = start + 1;
+            double rowArea = tiles.get(start).bytes() * scale;
+            double worst = worstRatio(tiles, start, end, rowArea, side, scale);
+            while (end < tiles.size()) {
+                double nextArea = rowArea + tiles.get(end).bytes() * scale;
+                double nextWorst = worstRatio(tiles, start, end + 1, nextArea, side, scale);
+                if (nextWorst > worst) {
+                    break;
+                }
+                rowArea = nextArea;
+                worst = nextWorst;
+                end++;
+            }
+            double thickness = rowArea / side;
+            double offset = 0;
+            for (int i = start; i < end; i++) {
+                double length = tiles.get(i).bytes() * scale / thickness;
+                if (width >= height) {
+                    addTile(tiles.get(i), x, y + offset, thickness, length);
+                } else {
+                    addTile(tiles.get(i), x + offset, y, length, thickness);
+                }
+                offset += length;
+            }
+            if (width >= height) {
+                x += thickness;
+                width -= thickness;
+            } else {
+                y += thickness;
+                height -= thickness;
+            }
+            start = end;
+        }
+    }
+
+    private static double worstRatio(List<Tile> tiles, int start, int end, double rowArea, double side, double scale) {
+        double thickness = rowArea / side;
+        double worst = 0;
+        for (int i = start; i < end; i++) {
+            double length = tiles.get(i).bytes() * scale / thickness;
+            worst = Math.max(worst, Math.max(length / thickness, thickness / length));
+        }
+        return worst;
+    }
+
+    private void addTile(Tile tile, double x, double y, double width, double height) {
+        StackPane pane = new StackPane();
+        pane.getStyleClass().add(tile.folder() >= 0 ? "usage-tile" : "usage-tile-files");
+        // Unmanaged, so the treemap pane doesn't resize tiles back to their preferred size
+        pane.setManaged(false);
+        pane.resizeRelocate(x + 1, y + 1, Math.max(0, width - 2), Math.max(0, height - 2));
+        if (tile.folder() >= 0) {
+            // Spread hues by position so neighbours differ
+            double hue = (tile.folder() * 47) % 360;
+            pane.setStyle("-fx-background-color: hsb(" + hue + ", 45%, 55%);");
+        }
+        String text = tile.name() + "\n" + FileSystemUtils.formatBytes(tile.bytes());
+        if (width > 60 && height > 34) {
+            Label label = new Label(text);
+            label.getStyleClass().add("usage-tile-label");
+            label.setMaxWidth(width - 8);
+            pane.getChildren().add(label);
+        }
+        Tooltip.install(pane, new Tooltip(text));
+        if (tile.folder() >= 0) {
+            pane.setOnMouseClicked(_ -> show(tile.folder()));
+        }
+        treemap.getChildren().add(pane);
+    }
+}
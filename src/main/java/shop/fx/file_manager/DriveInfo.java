@@ -1,12 +1,34 @@
 package shop.fx.file_manager;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import java.nio.file.Path;
+
+/**
+ * A drive root and what is known about it so far. The name and capacity start as
+ * placeholders and are filled in on the FX thread by {@link DriveProber}.
+ */
 public class DriveInfo {
+
+    public enum Status {
+        PROBING,
+        READY,
+        NOT_RESPONDING,
+        UNAVAILABLE
+    }
+
     private final Path path;
-    private final String displayName;
+    private final StringProperty displayName;
+    private final LongProperty totalSpace = new SimpleLongProperty(-1);
+    private final LongProperty freeSpace = new SimpleLongProperty(-1);
+    private final ObjectProperty<Status> status = new SimpleObjectProperty<>(Status.PROBING);
 
     public DriveInfo(Path path, String displayName) {
         this.path = path;
-        this.displayName = displayName;
+        this.displayName = new SimpleStringProperty(displayName);
     }
 
     public Path getPath() {
@@ -14,12 +36,33 @@ public class DriveInfo {
     }
 
     public String getDisplayName() {
+        return displayName.get();
+    }
+
+    public StringProperty displayNameProperty() {
         return displayName;
     }
 
+    // -1 until known
+    public LongProperty totalSpaceProperty() {
+        return totalSpace;
+    }
+
+    public LongProperty freeSpaceProperty() {
+        return freeSpace;
+    }
+
+    public ObjectProperty<Status> statusProperty() {
+        return status;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
     @Override
     public String toString() {
-        return displayName;
+        return getDisplayName();
     }
 }
 class DriveData {
@@ -0,0 +1,201 @@
+package shop.fx.file_manager;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import javax.swing.filechooser.FileSystemView;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discovers drives once and keeps their names and capacity up to date without ever
+ * touching them on the FX thread. Drives appear at once as placeholders; each is then
+ * probed on its own background thread, and a probe that takes longer than a few
+ * seconds marks the drive as not responding instead of holding anything up, e.g. a
+ * stale network mount. A hung probe is never started twice for the same drive.
+ * Everything is probed again periodically. On Linux the drives are the real mounts
+ * from {@link MountTable}, which is polled every couple of seconds so mounts and
+ * unmounts show up almost at once; only the drives that changed are touched then.
+ */
+public class DriveProber {
+
+    private static final long PROBE_TIMEOUT_SECONDS = 3;
+    private static final long REFRESH_SECONDS = 30;
+    private static final long MOUNT_POLL_MILLIS = 2000;
+
+    private record Probe(String displayName, boolean available, long totalSpace, long freeSpace) {
+    }
+
+    private final ExecutorService probes = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "drive-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "drive-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Every root seen, including unavailable ones, which are kept out of the visible list
+    private final Map<Path, DriveInfo> known = new LinkedHashMap<>();
+    private final ObservableList<DriveInfo> drives = FXCollections.observableArrayList();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    // Only touched on the timer thread
+    private String mountTable = "";
+
+    // FX thread only
+    public void start() {
+        update(roots(), true);
+        timer.scheduleWithFixedDelay(() -> {
+            List<Path> roots = roots();
+            Platform.runLater(() -> update(roots, true));
+        }, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+        if (MountTable.isAvailable()) {
+            // mountinfo signals changes through poll(), which Java can't wait on, so compare snapshots
+            timer.execute(() -> mountTable = MountTable.snapshot());
+            timer.scheduleWithFixedDelay(this::checkMounts, MOUNT_POLL_MILLIS, MOUNT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkMounts() {
+        String snapshot = MountTable.snapshot();
+        if (!snapshot.equals(mountTable)) {
+            mountTable = snapshot;
+            List<Path> roots = MountTable.mountPoints(snapshot);
+            Platform.runLater(() -> update(roots, false));
+        }
+    }
+
+    // Drives that are or may be available, in root order; FX thread only
+    public ObservableList<DriveInfo> getDrives() {
+        return drives;
+    }
+
+    public List<Path> getRoots() {
+        List<Path> roots = new ArrayList<>();
+        for (DriveInfo drive : drives) {
+            roots.add(drive.getPath());
+        }
+        return roots;
+    }
+
+    // Root enumeration only asks the OS for a list of names; nothing is touched here
+    private static List<Path> roots() {
+        if (MountTable.isAvailable()) {
+            List<Path> mounts = MountTable.mountPoints(MountTable.snapshot());
+            if (!mounts.isEmpty()) {
+                return mounts;
+            }
+        }
+        List<Path> roots = new ArrayList<>();
+        for (Path root : FileSystems.getDefault().getRootDirectories()) {
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    // Adds and removes drives to match roots, then probes either all of them or just the new ones
+    private void update(List<Path> roots, boolean probeAll) {
+        known.keySet().retainAll(roots);
+        drives.removeIf(drive -> !known.containsKey(drive.getPath()));
+        List<DriveInfo> added = new ArrayList<>();
+        for (Path root : roots) {
+            if (!known.containsKey(root)) {
+                DriveInfo drive = new DriveInfo(root, root.toString());
+                known.put(root, drive);
+                added.add(drive);
+                drives.add(drive);
+            }
+        }
+        for (DriveInfo drive : probeAll ? known.values() : added) {
+            probe(drive);
+        }
+    }
+
+    private void probe(DriveInfo drive) {
+        Path root = drive.getPath();
+        if (!inFlight.add(root)) {
+            // The last probe is still stuck; don't pile up threads behind it
+            return;
+        }
+        CompletableFuture<Probe> probe = CompletableFuture.supplyAsync(() -> probeNow(root), probes);
+        probe.whenComplete((result, error) -> {
+            inFlight.remove(root);
+            Platform.runLater(() -> apply(drive, result));
+        });
+        timer.schedule(() -> {
+            if (!probe.isDone()) {
+                System.err.println("Drive not responding: " + root);
+                Platform.runLater(() -> drive.statusProperty().set(DriveInfo.Status.NOT_RESPONDING));
+            }
+        }, PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static Probe probeNow(Path root) {
+        if (!Files.exists(root) || !Files.isReadable(root)) {
+            return new Probe(null, false, -1, -1);
+        }
+        String displayName = displayNameOf(root);
+        try {
+            FileStore store = Files.getFileStore(root);
+            return new Probe(displayName, true, store.getTotalSpace(), store.getUsableSpace());
+        } catch (IOException e) {
+            System.err.println("Error reading capacity of drive: " + root + ", Message: " + e.getMessage());
+            return new Probe(displayName, true, -1, -1);
+        }
+    }
+
+    private static String displayNameOf(Path root) {
+        try {
+            String name = FileSystemView.getFileSystemView().getSystemDisplayName(root.toFile());
+            return name == null || name.trim().isEmpty() ? root.toString() : name;
+        } catch (Exception e) {
+            System.err.println("Error getting name for drive: " + root + ", error: " + e.getMessage());
+            return "Drive (" + root + ")";
+        }
+    }
+
+    private void apply(DriveInfo drive, Probe result) {
+        if (known.get(drive.getPath()) != drive) {
+            // Removed while it was being probed
+            return;
+        }
+        if (result == null || !result.available()) {
+            drive.statusProperty().set(DriveInfo.Status.UNAVAILABLE);
+            drives.remove(drive);
+            return;
+        }
+        drive.displayNameProperty().set(result.displayName());
+        drive.totalSpaceProperty().set(result.totalSpace());
+        drive.freeSpaceProperty().set(result.freeSpace());
+        drive.statusProperty().set(DriveInfo.Status.READY);
+        if (!drives.contains(drive)) {
+            // Came back, e.g. a disc was inserted; keep root order
+            int index = 0;
+            for (DriveInfo other : known.values()) {
+                if (other == drive) {
+                    break;
+                }
+                if (drives.contains(other)) {
+                    index++;
+                }
+            }
+            drives.add(index, drive);
+        }
+    }
+}
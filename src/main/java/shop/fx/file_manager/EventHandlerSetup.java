@@ -1,5 +1,6 @@
 package shop.fx.file_manager;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.geometry.HPos;
@@ -7,14 +8,19 @@ import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.Objects;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class EventHandlerSetup {
 
@@ -45,43 +51,212 @@ public class EventHandlerSetup {
 
         ui.getCloseButton().setOnAction(_ -> Platform.exit());
 
-        ui.getHomeButton().setOnAction(_ -> {
-            controller.loadDrives();
-            controller.getNavigationHistory().clear();
-            controller.setHistoryIndex(-1);
-        });
+        ui.getHomeButton().setOnAction(_ -> controller.goHome());
+        ui.getEmptyTrashButton().setOnAction(_ -> fileOperations.handleEmptyTrash());
 
         ui.getBackButton().setOnAction(_ -> {
-            if (controller.getHistoryIndex() > 0) {
-                controller.setHistoryIndex(controller.getHistoryIndex() - 1);
+            try {
+                controller.goBack();
+            } catch (IOException e) {
+                System.err.println("Error navigating back: " + e.getMessage());
+                controller.showErrorDialog("Error", "Error navigating back: " + e.getMessage());
+            }
+        });
+
+        ui.getForwardButton().setOnAction(_ -> {
+            try {
+                controller.goForward();
+            } catch (IOException e) {
+                System.err.println("Error navigating forward: " + e.getMessage());
+                controller.showErrorDialog("Error", "Error navigating forward: " + e.getMessage());
+            }
+        });
+
+        // Context menus are only built when first opened, keeping their icons and the
+        // trash support check (which may start AWT) off the startup path
+        for (Control fileView : List.of(ui.getFileListView(), ui.getDetailView())) {
+            setContextMenuLazily(fileView, this::createFileContextMenu);
+            // Scrolling through a folder counts as browsing, so background jobs ease off
+            fileView.addEventFilter(ScrollEvent.SCROLL, _ -> Throttle.global().backOff());
+            fileView.setOnMouseClicked(this::handleFileViewClick);
+        }
+        setContextMenuLazily(ui.getPinnedFoldersListView(), this::createPinnedContextMenu);
+
+        ui.getPinnedFoldersListView().setOnMouseClicked(event -> {
+            if (event.getClickCount() == 2) {
+                Path selectedPath = ui.getPinnedFoldersListView().getSelectionModel().getSelectedItem();
+                if (selectedPath != null) {
+                    try {
+                        controller.openFolder(selectedPath);
+                    } catch (IOException e) {
+                        System.err.println("Error opening pinned folder: " + e.getMessage());
+                        controller.showErrorDialog("Error", "Error opening pinned folder: " + e.getMessage());
+                    }
+                }
+            }
+        });
+
+        ui.getDriveListView().setOnMouseClicked(_ -> {
+            DriveInfo selectedDrive = ui.getDriveListView().getSelectionModel().getSelectedItem();
+            if (selectedDrive != null) {
                 try {
-                    controller.loadDirectory(controller.getNavigationHistory().get(controller.getHistoryIndex()));
+                    controller.openFolder(selectedDrive.getPath());
+                } catch (AccessDeniedException e) {
+                    System.err.println("Caught AccessDeniedException for drive: " + selectedDrive.getPath());
+                    controller.showErrorDialog("Access Denied", "Access Denied: Cannot open drive " + selectedDrive.getPath().toString());
                 } catch (IOException e) {
-                    System.err.println("Error navigating back: " + e.getMessage());
-                    controller.showErrorDialog("Error", "Error navigating back: " + e.getMessage());
+                    System.err.println("IOException accessing drive: " + selectedDrive.getPath() + ", Message: " + e.getMessage());
+                    controller.showErrorDialog("Error", "Error accessing drive: " + e.getMessage());
+                }
+            }
+        });
+
+        ui.getMainContent().setOnMouseClicked(event -> {
+            if (ui.getMainContent().getChildren().get(1) instanceof GridPane) {
+                Node target = event.getPickResult().getIntersectedNode();
+                System.out.println("Clicked node: " + target);
+                while (target != null && !(target instanceof GridPane && target.getStyleClass().contains("drive-cell-content"))) {
+                    target = target.getParent();
+                }
+                if (target != null) {
+                    DriveInfo selectedDrive = (DriveInfo) target.getUserData();
+                    System.out.println("Selected drive: " + (selectedDrive != null ? selectedDrive.getPath() : "null"));
+                    if (selectedDrive != null) {
+                        try {
+                            controller.openFolder(selectedDrive.getPath());
+                        } catch (AccessDeniedException e) {
+                            System.err.println("Caught AccessDeniedException for drive: " + selectedDrive.getPath());
+                            controller.showErrorDialog("Access Denied", "Access Denied: Cannot open drive " + selectedDrive.getPath().toString());
+                        } catch (IOException e) {
+                            System.err.println("IOException accessing drive: " + selectedDrive.getPath() + ", Message: " + e.getMessage());
+                            controller.showErrorDialog("Error", "Error accessing drive: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        });
+
+        // Debounce typing so a burst of keystrokes runs one search; clearing the query applies at once
+        PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+        searchDebounce.setOnFinished(_ ->
+                controller.search(ui.getSearchField().getText(), ui.getSearchScopeBox().getValue()));
+        ui.getSearchField().textProperty().addListener((_, _, newValue) -> {
+            if (newValue.isEmpty()) {
+                searchDebounce.stop();
+                controller.search(newValue, ui.getSearchScopeBox().getValue());
+            } else {
+                searchDebounce.playFromStart();
+            }
+        });
+        ui.getSearchScopeBox().valueProperty().addListener((_, _, newValue) ->
+                controller.search(ui.getSearchField().getText(), newValue));
+
+        ui.getSortFieldBox().setValue(controller.getSortField());
+        ui.getSortDescendingButton().setSelected(controller.isSortDescending());
+        ui.getSortFieldBox().valueProperty().addListener((_, _, newValue) ->
+                controller.setSort(newValue, ui.getSortDescendingButton().isSelected()));
+        ui.getSortDescendingButton().selectedProperty().addListener((_, _, descending) ->
+                controller.setSort(ui.getSortFieldBox().getValue(), descending));
+
+        // The table's headers drive the same sort controls, which keep its header arrow in step
+        DetailView detailView = ui.getDetailView();
+        detailView.setSortPolicy(table -> {
+            if (!table.getSortOrder().isEmpty()) {
+                TableColumn<FileEntry, ?> column = table.getSortOrder().getFirst();
+                SortField field = detailView.sortFieldOf(column);
+                if (field != null) {
+                    ui.getSortFieldBox().setValue(field);
+                    ui.getSortDescendingButton().setSelected(column.getSortType() == TableColumn.SortType.DESCENDING);
                 }
             } else {
-                controller.loadDrives();
+                // A third click clears the header's sort, but the listing always has one
+                Platform.runLater(this::showSortInHeader);
             }
+            return true;
         });
+        showSortInHeader();
+        ui.getSortFieldBox().valueProperty().addListener((_, _, _) -> showSortInHeader());
+        ui.getSortDescendingButton().selectedProperty().addListener((_, _, _) -> showSortInHeader());
 
-        ui.getForwardButton().setOnAction(_ -> {
-            if (controller.getHistoryIndex() < controller.getNavigationHistory().size() - 1) {
-                controller.setHistoryIndex(controller.getHistoryIndex() + 1);
+        ui.getDetailModeButton().setSelected(controller.isDetailModeSaved());
+        ui.getDetailModeButton().selectedProperty().addListener((_, _, detailMode) -> controller.setDetailMode(detailMode));
+
+        // Setup cell factory for pinned folders
+        ui.getPinnedFoldersListView().setCellFactory(p -> new ListCell<>() {
+            @Override
+            protected void updateItem(Path item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                    setGraphic(null);
+                } else {
+                    GridPane cellContent = new GridPane();
+                    cellContent.getStyleClass().add("pinned-folder-cell-content");
+
+                    ImageView folderIcon = new ImageView(IconRegistry.get("folder_64.png", 16));
+                    folderIcon.setFitHeight(16);
+                    folderIcon.setPreserveRatio(true);
+
+                    Label folderName = new Label(item.getFileName().toString());
+                    folderName.getStyleClass().add("pinned-folder-name");
+
+                    cellContent.setHgap(8);
+                    cellContent.add(folderIcon, 0, 0);
+                    cellContent.add(folderName, 1, 0);
+
+                    setGraphic(cellContent);
+                    setText(null);
+                }
+            }
+        });
+    }
+
+    private void handleFileViewClick(MouseEvent event) {
+        if (event.getClickCount() == 2) {
+            FileEntry selectedEntry = ui.getFileSelection().getSelectedItem();
+            if (selectedEntry != null) {
+                Path selectedPath = selectedEntry.path();
                 try {
-                    controller.loadDirectory(controller.getNavigationHistory().get(controller.getHistoryIndex()));
+                    if (selectedEntry.directory()) {
+                        controller.openFolder(selectedPath);
+                    } else {
+                        fileOperations.openItem(selectedPath);
+                    }
+                } catch (AccessDeniedException e) {
+                    System.err.println("Caught AccessDeniedException for: " + selectedPath);
+                    controller.showErrorDialog("Access Denied", "Access Denied: Cannot open " + selectedPath);
                 } catch (IOException e) {
-                    System.err.println("Error navigating forward: " + e.getMessage());
-                    controller.showErrorDialog("Error", "Error navigating forward: " + e.getMessage());
+                    System.err.println("IOException accessing: " + selectedPath + ", Message: " + e.getMessage());
+                    controller.showErrorDialog("Error", "Error accessing: " + e.getMessage());
                 }
             }
+        }
+    }
+
+    private void showSortInHeader() {
+        TableColumn<FileEntry, FileEntry> column = ui.getDetailView().columnOf(ui.getSortFieldBox().getValue());
+        column.setSortType(ui.getSortDescendingButton().isSelected() ? TableColumn.SortType.DESCENDING : TableColumn.SortType.ASCENDING);
+        if (ui.getDetailView().getSortOrder().size() != 1 || ui.getDetailView().getSortOrder().getFirst() != column) {
+            ui.getDetailView().getSortOrder().setAll(List.of(column));
+        }
+    }
+
+    private static void setContextMenuLazily(Control control, Supplier<ContextMenu> factory) {
+        // Filters run before the control's own handler, which shows whatever menu is set by then
+        control.addEventFilter(ContextMenuEvent.CONTEXT_MENU_REQUESTED, _ -> {
+            if (control.getContextMenu() == null) {
+                control.setContextMenu(factory.get());
+            }
         });
+    }
 
-        // Context menu for fileListView
+    // Context menu for fileListView
+    private ContextMenu createFileContextMenu() {
         ContextMenu contextMenu = new ContextMenu();
         MenuItem openItem = new MenuItem("Open");
         MenuItem renameItem = new MenuItem("Rename");
-        MenuItem deleteItem = new MenuItem("Delete");
+        MenuItem deleteItem = new MenuItem(Trash.isSupported() ? "Move to Trash" : "Delete");
+        MenuItem deletePermanentlyItem = new MenuItem("Delete Permanently");
         MenuItem copyItem = new MenuItem("Copy");
         MenuItem cutItem = new MenuItem("Cut");
         MenuItem pasteItem = new MenuItem("Paste");
@@ -91,6 +266,7 @@ public class EventHandlerSetup {
         openItem.getStyleClass().add("menu-item");
         renameItem.getStyleClass().add("menu-item");
         deleteItem.getStyleClass().add("menu-item");
+        deletePermanentlyItem.getStyleClass().add("menu-item");
         copyItem.getStyleClass().add("menu-item");
         cutItem.getStyleClass().add("menu-item");
         pasteItem.getStyleClass().add("menu-item");
@@ -98,108 +274,76 @@ public class EventHandlerSetup {
         pinFolderItem.getStyleClass().add("menu-item");
 
         // Set icons for context menu items
-        Image openImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/open_64.png")));
-        if (openImage.isError()) {
-            System.err.println("Failed to load open_64.png");
-        }
+        Image openImage = IconRegistry.get("open_64.png", 24);
         ImageView openIcon = new ImageView(openImage);
         openIcon.setFitHeight(24);
         openIcon.setPreserveRatio(true);
         openItem.setGraphic(openIcon);
 
-        Image renameImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/rename_64.png")));
-        if (renameImage.isError()) {
-            System.err.println("Failed to load rename_64.png");
-        }
+        Image renameImage = IconRegistry.get("rename_64.png", 20);
         ImageView renameIcon = new ImageView(renameImage);
         renameIcon.setFitHeight(20);
         renameIcon.setPreserveRatio(true);
         renameItem.setGraphic(renameIcon);
 
-        Image deleteImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/delete_64.png")));
-        if (deleteImage.isError()) {
-            System.err.println("Failed to load delete_64.png");
-        }
+        Image deleteImage = IconRegistry.get("delete_64.png", 20);
         ImageView deleteIcon = new ImageView(deleteImage);
         deleteIcon.setFitHeight(20);
         deleteIcon.setPreserveRatio(true);
         deleteItem.setGraphic(deleteIcon);
 
-        Image copyImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/copy_64.png")));
-        if (copyImage.isError()) {
-            System.err.println("Failed to load copy_64.png");
-        }
+        ImageView deletePermanentlyIcon = new ImageView(deleteImage);
+        deletePermanentlyIcon.setFitHeight(20);
+        deletePermanentlyIcon.setPreserveRatio(true);
+        deletePermanentlyItem.setGraphic(deletePermanentlyIcon);
+
+        Image copyImage = IconRegistry.get("copy_64.png", 20);
         ImageView copyIcon = new ImageView(copyImage);
         copyIcon.setFitHeight(20);
         copyIcon.setPreserveRatio(true);
         copyItem.setGraphic(copyIcon);
 
-        Image cutImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/cut_64.png")));
-        if (cutImage.isError()) {
-            System.err.println("Failed to load cut_64.png");
-        }
+        Image cutImage = IconRegistry.get("cut_64.png", 20);
         ImageView cutIcon = new ImageView(cutImage);
         cutIcon.setFitHeight(20);
         cutIcon.setPreserveRatio(true);
         cutItem.setGraphic(cutIcon);
 
-        Image pasteImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/paste_64.png")));
-        if (pasteImage.isError()) {
-            System.err.println("Failed to load paste_64.png");
-        }
+        Image pasteImage = IconRegistry.get("paste_64.png", 20);
         ImageView pasteIcon = new ImageView(pasteImage);
         pasteIcon.setFitHeight(20);
         pasteIcon.setPreserveRatio(true);
         pasteItem.setGraphic(pasteIcon);
 
-        Image newFolderImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/new_folder_64.png")));
-        if (newFolderImage.isError()) {
-            System.err.println("Failed to load new_folder_64.png");
-        }
+        Image newFolderImage = IconRegistry.get("new_folder_64.png", 20);
         ImageView newFolderIcon = new ImageView(newFolderImage);
         newFolderIcon.setFitHeight(20);
         newFolderIcon.setPreserveRatio(true);
         newFolderItem.setGraphic(newFolderIcon);
 
-        Image pinImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/pin_64.png")));
-        if (pinImage.isError()) {
-            System.err.println("Failed to load pin_64.png");
-        }
+        Image pinImage = IconRegistry.get("pin_64.png", 20);
         ImageView pinIcon = new ImageView(pinImage);
         pinIcon.setFitHeight(20);
         pinIcon.setPreserveRatio(true);
         pinFolderItem.setGraphic(pinIcon);
 
-        Image unpinImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/unpin_64.png")));
-        if (unpinImage.isError()) {
-            System.err.println("Failed to load unpin_64.png");
-        }
-        ImageView unpinIcon = new ImageView(unpinImage);
-        unpinIcon.setFitHeight(20);
-        unpinIcon.setPreserveRatio(true);
-
         // Bind Paste item state to clipboard content
-        pasteItem.disableProperty().bind(Bindings.isNull(controller.copiedPathProperty()));
+        pasteItem.disableProperty().bind(Bindings.isEmpty(controller.getClipboard()));
         pasteIcon.opacityProperty().bind(Bindings.when(pasteItem.disableProperty())
                 .then(0.5)
                 .otherwise(1.0));
 
-        // Bind Pin/Unpin item visibility based on selection
-        pinFolderItem.visibleProperty().bind(Bindings.createBooleanBinding(() -> {
-            Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-            try {
-                return selectedPath != null && Files.exists(selectedPath) && Files.isDirectory(selectedPath);
-            } catch (Exception e) {
-                System.err.println("Error checking if path is directory: " + selectedPath + ", Message: " + e.getMessage());
-                return false;
-            }
-        }, ui.getFileListView().getSelectionModel().selectedItemProperty()));
+        // Pin is only offered for folders; checked on opening, since the menu is shared by the list and the table
+        contextMenu.setOnShowing(_ -> {
+            FileEntry selectedEntry = ui.getFileSelection().getSelectedItem();
+            pinFolderItem.setVisible(selectedEntry != null && selectedEntry.directory());
+        });
 
         openItem.setOnAction(_ -> {
-            Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-            if (selectedPath != null) {
+            FileEntry selectedEntry = ui.getFileSelection().getSelectedItem();
+            if (selectedEntry != null) {
                 try {
-                    fileOperations.openItem(selectedPath);
+                    fileOperations.openItem(selectedEntry.path());
                 } catch (IOException e) {
                     System.err.println("Error opening item: " + e.getMessage());
                     controller.showErrorDialog("Error", "Error opening item: " + e.getMessage());
@@ -211,11 +355,11 @@ public class EventHandlerSetup {
         });
 
         renameItem.setOnAction(_ -> {
-            Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-            int selectedIndex = ui.getFileListView().getSelectionModel().getSelectedIndex();
-            if (selectedPath != null && selectedIndex >= 0) {
-                System.out.println("Initiating rename for: " + selectedPath + " at index: " + selectedIndex);
-                fileOperations.handleRename(selectedPath, selectedIndex);
+            FileEntry selectedEntry = ui.getFileSelection().getSelectedItem();
+            int selectedIndex = ui.getFileSelection().getSelectedIndex();
+            if (selectedEntry != null && selectedIndex >= 0) {
+                System.out.println("Initiating rename for: " + selectedEntry.path() + " at index: " + selectedIndex);
+                fileOperations.handleRename(selectedEntry, selectedIndex);
             } else {
                 System.out.println("Rename failed: No item selected");
                 controller.showErrorDialog("Error", "No file or folder selected.");
@@ -223,32 +367,40 @@ public class EventHandlerSetup {
         });
 
         deleteItem.setOnAction(_ -> fileOperations.handleDelete());
+        deletePermanentlyItem.setOnAction(_ -> fileOperations.handleDeletePermanently());
+        deletePermanentlyItem.setVisible(Trash.isSupported());
         copyItem.setOnAction(_ -> fileOperations.handleCopy());
         cutItem.setOnAction(_ -> fileOperations.handleCut());
         pasteItem.setOnAction(_ -> fileOperations.handlePaste());
         newFolderItem.setOnAction(_ -> fileOperations.handleNewFolder());
 
         pinFolderItem.setOnAction(_ -> {
-            Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-            if (selectedPath != null) {
-                fileOperations.handlePinFolder(selectedPath);
+            FileEntry selectedEntry = ui.getFileSelection().getSelectedItem();
+            if (selectedEntry != null) {
+                fileOperations.handlePinFolder(selectedEntry.path());
             }
         });
 
-        contextMenu.getItems().addAll(openItem, renameItem, deleteItem, copyItem, cutItem, pasteItem, newFolderItem, pinFolderItem);
-        ui.getFileListView().setContextMenu(contextMenu);
+        contextMenu.getItems().addAll(openItem, renameItem, deleteItem, deletePermanentlyItem, copyItem, cutItem, pasteItem, newFolderItem, pinFolderItem);
+        return contextMenu;
+    }
 
-        // Context menu for pinnedFoldersListView
+    // Context menu for pinnedFoldersListView
+    private ContextMenu createPinnedContextMenu() {
         ContextMenu pinnedContextMenu = new ContextMenu();
         MenuItem pinnedOpenItem = new MenuItem("Open");
         MenuItem pinnedUnpinItem = new MenuItem("Unpin Folder");
         pinnedOpenItem.getStyleClass().add("menu-item");
         pinnedUnpinItem.getStyleClass().add("menu-item");
 
-        ImageView PinOpenIcon = new ImageView(openImage);
+        ImageView PinOpenIcon = new ImageView(IconRegistry.get("open_64.png", 20));
         PinOpenIcon.setFitHeight(20);
         PinOpenIcon.setPreserveRatio(true);
         pinnedOpenItem.setGraphic(PinOpenIcon);
+        Image unpinImage = IconRegistry.get("unpin_64.png", 20);
+        ImageView unpinIcon = new ImageView(unpinImage);
+        unpinIcon.setFitHeight(20);
+        unpinIcon.setPreserveRatio(true);
         pinnedUnpinItem.setGraphic(unpinIcon);
         pinnedContextMenu.getItems().addAll(pinnedOpenItem, pinnedUnpinItem);
 
@@ -274,144 +426,6 @@ public class EventHandlerSetup {
             }
         });
 
-        ui.getPinnedFoldersListView().setContextMenu(pinnedContextMenu);
-
-        ui.getFileListView().setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
-                Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-                if (selectedPath != null) {
-                    try {
-                        if (Files.isDirectory(selectedPath)) {
-                            while (controller.getNavigationHistory().size() > controller.getHistoryIndex() + 1) {
-                                controller.getNavigationHistory().removeLast();
-                            }
-                            controller.getNavigationHistory().add(selectedPath);
-                            controller.setHistoryIndex(controller.getHistoryIndex() + 1);
-                            controller.loadDirectory(selectedPath);
-                        } else {
-                            fileOperations.openItem(selectedPath);
-                        }
-                    } catch (AccessDeniedException e) {
-                        System.err.println("Caught AccessDeniedException for: " + selectedPath);
-                        controller.showErrorDialog("Access Denied", "Access Denied: Cannot open " + selectedPath);
-                    } catch (IOException e) {
-                        System.err.println("IOException accessing: " + selectedPath + ", Message: " + e.getMessage());
-                        controller.showErrorDialog("Error", "Error accessing: " + e.getMessage());
-                    }
-                }
-            }
-        });
-
-        ui.getPinnedFoldersListView().setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
-                Path selectedPath = ui.getPinnedFoldersListView().getSelectionModel().getSelectedItem();
-                if (selectedPath != null) {
-                    try {
-                        while (controller.getNavigationHistory().size() > controller.getHistoryIndex() + 1) {
-                            controller.getNavigationHistory().removeLast();
-                        }
-                        controller.getNavigationHistory().add(selectedPath);
-                        controller.setHistoryIndex(controller.getHistoryIndex() + 1);
-                        controller.loadDirectory(selectedPath);
-                    } catch (IOException e) {
-                        System.err.println("Error opening pinned folder: " + e.getMessage());
-                        controller.showErrorDialog("Error", "Error opening pinned folder: " + e.getMessage());
-                    }
-                }
-            }
-        });
-
-        ui.getDriveListView().setOnMouseClicked(_ -> {
-            DriveInfo selectedDrive = ui.getDriveListView().getSelectionModel().getSelectedItem();
-            if (selectedDrive != null) {
-                try {
-                    while (controller.getNavigationHistory().size() > controller.getHistoryIndex() + 1) {
-                        controller.getNavigationHistory().removeLast();
-                    }
-                    controller.getNavigationHistory().add(selectedDrive.getPath());
-                    controller.setHistoryIndex(controller.getHistoryIndex() + 1);
-                    controller.loadDirectory(selectedDrive.getPath());
-                } catch (AccessDeniedException e) {
-                    System.err.println("Caught AccessDeniedException for drive: " + selectedDrive.getPath());
-                    controller.showErrorDialog("Access Denied", "Access Denied: Cannot open drive " + selectedDrive.getPath().toString());
-                } catch (IOException e) {
-                    System.err.println("IOException accessing drive: " + selectedDrive.getPath() + ", Message: " + e.getMessage());
-                    controller.showErrorDialog("Error", "Error accessing drive: " + e.getMessage());
-                }
-            }
-        });
-
-        ui.getMainContent().setOnMouseClicked(event -> {
-            if (ui.getMainContent().getChildren().get(1) instanceof GridPane) {
-                Node target = event.getPickResult().getIntersectedNode();
-                System.out.println("Clicked node: " + target);
-                while (target != null && !(target instanceof GridPane && target.getStyleClass().contains("drive-cell-content"))) {
-                    target = target.getParent();
-                }
-                if (target != null) {
-                    DriveInfo selectedDrive = (DriveInfo) target.getUserData();
-                    System.out.println("Selected drive: " + (selectedDrive != null ? selectedDrive.getPath() : "null"));
-                    if (selectedDrive != null) {
-                        try {
-                            while (controller.getNavigationHistory().size() > controller.getHistoryIndex() + 1) {
-                                controller.getNavigationHistory().removeLast();
-                            }
-                            controller.getNavigationHistory().add(selectedDrive.getPath());
-                            controller.setHistoryIndex(controller.getHistoryIndex() + 1);
-                            controller.loadDirectory(selectedDrive.getPath());
-                        } catch (AccessDeniedException e) {
-                            System.err.println("Caught AccessDeniedException for drive: " + selectedDrive.getPath());
-                            controller.showErrorDialog("Access Denied", "Access Denied: Cannot open drive " + selectedDrive.getPath().toString());
-                        } catch (IOException e) {
-                            System.err.println("IOException accessing drive: " + selectedDrive.getPath() + ", Message: " + e.getMessage());
-                            controller.showErrorDialog("Error", "Error accessing drive: " + e.getMessage());
-                        }
-                    }
-                }
-            }
-        });
-
-        ui.getSearchField().textProperty().addListener((_, oldValue, newValue) -> {
-            if (controller.getCurrentPath() != null) {
-                try {
-                    ui.getFileListView().getItems().clear();
-                    fileSystemUtils.searchDirectory(controller.getCurrentPath(), newValue, ui.getFileListView());
-                } catch (IOException e) {
-                    System.err.println("Error searching directory: " + e.getMessage());
-                    controller.showErrorDialog("Error", "Error searching directory: " + e.getMessage());
-                }
-            }
-        });
-
-        // Setup cell factory for pinned folders
-        ui.getPinnedFoldersListView().setCellFactory(p -> new ListCell<>() {
-            @Override
-            protected void updateItem(Path item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || item == null) {
-                    setText(null);
-                    setGraphic(null);
-                } else {
-                    GridPane cellContent = new GridPane();
-                    cellContent.getStyleClass().add("pinned-folder-cell-content");
-
-                    ImageView folderIcon = new ImageView(new Image(
-                            Objects.requireNonNull(getClass().getResourceAsStream("icons/folder_64.png"))
-                    ));
-                    folderIcon.setFitHeight(16);
-                    folderIcon.setPreserveRatio(true);
-
-                    Label folderName = new Label(item.getFileName().toString());
-                    folderName.getStyleClass().add("pinned-folder-name");
-
-                    cellContent.setHgap(8);
-                    cellContent.add(folderIcon, 0, 0);
-                    cellContent.add(folderName, 1, 0);
-
-                    setGraphic(cellContent);
-                    setText(null);
-                }
-            }
-        });
+        return pinnedContextMenu;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Snapshot of one directory entry, taken with a single attribute read when the
+ * directory is listed so that rendering never touches the filesystem.
+ *
+ * <p>Single entries, such as changed files and search results, are {@link Standalone}
+ * records holding everything ready-made: the lowercased name so filtering doesn't
+ * allocate per keystroke, and the natural sort key. Listed directories are packed into
+ * a {@link CompactListing}, whose rows only hold their place in it and build names and
+ * paths when asked.
+ */
+public sealed interface FileEntry permits FileEntry.Standalone, CompactListing.Row {
+
+    enum Access {
+        READABLE,
+        DENIED,
+        ERROR
+    }
+
+    Path path();
+
+    String name();
+
+    String lowerName();
+
+    String sortKey();
+
+    boolean directory();
+
+    long size();
+
+    long lastModified();
+
+    String extension();
+
+    Access access();
+
+    // Whether the lowercased name contains lowerQuery, for filtering a listing
+    default boolean nameContains(String lowerQuery) {
+        return lowerName().contains(lowerQuery);
+    }
+
+    record Standalone(Path path, String name, String lowerName, String sortKey, boolean directory, long size,
+                      long lastModified, String extension, Access access) implements FileEntry {
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static FileEntry of(Path path) {
+        String name = path.getFileName() != null ? path.getFileName().toString() : path.toString();
+        String lowerName = name.toLowerCase();
+        String sortKey = ListingSorter.naturalKey(lowerName);
+        try {
+            BasicFileAttributes attrs = readAttributes(path);
+            boolean directory = attrs.isDirectory();
+            return new Standalone(path, name, lowerName, sortKey, directory, directory ? 0 : attrs.size(),
+                    attrs.lastModifiedTime().toMillis(), directory ? "" : extensionOf(name), Access.READABLE);
+        } catch (AccessDeniedException e) {
+            System.err.println("Access denied checking attributes for: " + path);
+            return new Standalone(path, name, lowerName, sortKey, false, -1, 0, "", Access.DENIED);
+        } catch (IOException e) {
+            System.err.println("IOException checking attributes for: " + path + ", Message: " + e.getMessage());
+            return new Standalone(path, name, lowerName, sortKey, false, -1, 0, "", Access.ERROR);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // Broken symlink: describe the link itself
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    static String extensionOf(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        if (dotIndex > 0 && dotIndex < fileName.length() - 1) {
+            return fileName.substring(dotIndex + 1).toLowerCase();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,418 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Filename index over whole drives, kept on disk between runs so a global search
+ * answers from memory instead of walking the filesystem. At startup the saved index
+ * is loaded and refreshed incrementally: only directories whose mtime changed are
+ * re-listed. Watched directories (pinned folders and the folder being browsed) are
+ * re-listed as soon as the watcher reports a change. All writes happen on the index
+ * thread; queries only take the read lock.
+ */
+public class FileIndex implements DirectoryWatcher.Listener {
+
+    private static final int MAX_RESULTS = 1000;
+    private static final long REFRESH_MINUTES = 15;
+    // Virtual filesystems whose names are not worth indexing
+    private static final Set<Path> EXCLUDED = Set.of(Paths.get("/proc"), Paths.get("/sys"), Paths.get("/dev"), Paths.get("/run"));
+
+    private final Path indexFile;
+    private final DirectoryWatcher watcher;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService indexer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final ExecutorService queries = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "file-index-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Path> watchedFolders = ConcurrentHashMap.newKeySet();
+    private final Set<Path> pendingRescans = ConcurrentHashMap.newKeySet();
+    private volatile IndexTable table = new IndexTable();
+    private volatile boolean ready;
+    private volatile long indexedCount;
+    private volatile double indexRate;
+    private volatile long sizeOnDisk;
+    private volatile double lastQueryMillis;
+
+    public FileIndex(DirectoryWatcher watcher) {
+        this.watcher = watcher;
+        this.indexFile = FileSystemUtils.cacheDirectory().resolve("filenames.idx");
+        watcher.addListener(this);
+    }
+
+    // Loads or builds the index for the given drive roots, then keeps it fresh in the background
+    public void start(List<Path> roots) {
+        List<Path> driveRoots = List.copyOf(roots);
+        indexer.execute(() -> open(driveRoots));
+        indexer.scheduleWithFixedDelay(() -> {
+            // An exception escaping here would cancel every later refresh
+            try {
+                refresh(driveRoots);
+                save();
+            } catch (RuntimeException e) {
+                System.err.println("Error refreshing filename index, Message: " + e.getMessage());
+            }
+        }, REFRESH_MINUTES, REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Re-lists the folder whenever it changes, even while it isn't being browsed
+    public void watch(Path folder) {
+        if (watchedFolders.add(folder)) {
+            watcher.watch(folder);
+        }
+    }
+
+    public void unwatch(Path folder) {
+        if (watchedFolders.remove(folder)) {
+            watcher.unwatch(folder);
+        }
+    }
+
+    public Task<List<FileEntry>> search(String query) {
+        Task<List<FileEntry>> task = new Task<>() {
+            @Override
+            protected List<FileEntry> call() {
+                List<Path> paths = query(query);
+                List<FileEntry> entries = new ArrayList<>(paths.size());
+                for (Path path : paths) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    FileEntry entry = FileEntry.of(path);
+                    // The index can lag behind deletions it hasn't been told about
+                    if (entry.access() == FileEntry.Access.ERROR && !Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                        continue;
+                    }
+                    entries.add(entry);
+                }
+                updateMessage(statusText(entries.size()));
+                return entries;
+            }
+        };
+        queries.execute(task);
+        return task;
+    }
+
+    public List<Path> query(String query) {
+        long start = System.nanoTime();
+        List<Path> paths = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IndexTable current = table;
+            for (int id : current.query(query.toLowerCase(), MAX_RESULTS)) {
+                paths.add(current.path(id));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lastQueryMillis = (System.nanoTime() - start) / 1e6;
+        return paths;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getEntryCount() {
+        return table.size();
+    }
+
+    // Entries added by the running or last build/refresh
+    public long getIndexedCount() {
+        return indexedCount;
+    }
+
+    public double getIndexRate() {
+        return indexRate;
+    }
+
+    public long getSizeOnDisk() {
+        return sizeOnDisk;
+    }
+
+    public double getLastQueryMillis() {
+        return lastQueryMillis;
+    }
+
+    private String statusText(int matches) {
+        if (!ready) {
+            return String.format("Building filename index, %,d entries so far...", indexedCount);
+        }
+        return String.format("%,d matches in %.1f ms (%,d names indexed, %.1f MB on disk)",
+                matches, lastQueryMillis, getEntryCount(), sizeOnDisk / (1024.0 * 1024.0));
+    }
+
+    private void open(List<Path> roots) {
+        long start = System.nanoTime();
+        if (Files.exists(indexFile)) {
+            try {
+                IndexTable loaded = IndexTable.read(indexFile);
+                publish(loaded);
+                sizeOnDisk = Files.size(indexFile);
+                ready = true;
+                System.out.printf("Loaded filename index: %,d entries in %.0f ms%n",
+                        loaded.size(), (System.nanoTime() - start) / 1e6);
+            } catch (IOException e) {
+                System.err.println("Error reading filename index: " + indexFile + ", Message: " + e.getMessage());
+            }
+        }
+        if (ready) {
+            refresh(roots);
+        } else {
+            IndexTable built = new IndexTable();
+            indexedCount = 0;
+            for (Path root : roots) {
+                scanTree(built, -1, root);
+            }
+            publish(built);
+            ready = true;
+            double seconds = Math.max((System.nanoTime() - start) / 1e9, 0.001);
+            indexRate = built.size() / seconds;
+            System.out.printf("Built filename index: %,d entries in %.1f s (%,.0f/s)%n", built.size(), seconds, indexRate);
+        }
+        save();
+    }
+
+    // Re-lists only the directories whose mtime moved since they were indexed
+    private void refresh(List<Path> roots) {
+        long start = System.nanoTime();
+        indexedCount = 0;
+        long directories = 0;
+        long relisted = 0;
+        Set<String> rootNames = new HashSet<>();
+        for (Path root : roots) {
+            rootNames.add(root.toString());
+            if (table.find(root) < 0) {
+                scanTree(table, -1, root);
+            }
+        }
+        for (int rootId : table.roots()) {
+            if (!rootNames.contains(table.name(rootId))) {
+                mutate(() -> table.remove(rootId));
+                continue;
+            }
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(rootId);
+            while (!pending.isEmpty()) {
+                int id = pending.pop();
+                if (!table.isLive(id)) {
+                    continue;
+                }
+                directories++;
+                if (relistIfChanged(id, table.path(id))) {
+                    relisted++;
+                }
+                for (int child : table.children(id)) {
+                    if (table.isDirectory(child)) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 0.001);
+        System.out.printf("Refreshed filename index: checked %,d folders, re-listed %,d, added %,d entries in %.1f s%n",
+                directories, relisted, indexedCount, seconds);
+    }
+
+    // Returns true if the directory was re-listed
+    private boolean relistIfChanged(int id, Path directory) {
+        if (EXCLUDED.contains(directory)) {
+            return false;
+        }
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (NoSuchFileException e) {
+            mutate(() -> table.remove(id));
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+        if (modified == table.modified(id)) {
+            return false;
+        }
+        Map<String, Integer> known = new HashMap<>();
+        for (int child : table.children(id)) {
+            known.put(table.name(child), child);
+        }
+        List<Path> added = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                if (known.remove(child.getFileName().toString()) == null) {
+                    added.add(child);
+                }
+            }
+        } catch (IOException e) {
+            // Keep what we had; the unchanged mtime check retries next time
+            return false;
+        }
+        mutate(() -> {
+            for (int gone : known.values()) {
+                table.remove(gone);
+            }
+            table.setModified(id, modified);
+        });
+        for (Path child : added) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    scanTree(table, id, child);
+                } else {
+                    mutate(() -> table.add(id, child.getFileName().toString(), false, 0));
+                    indexedCount++;
+                }
+            } catch (IOException e) {
+                // Gone again before we could look at it
+            }
+        }
+        return true;
+    }
+
+    // Adds start and everything below it under parentId
+    private void scanTree(IndexTable target, int parentId, Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                private final Deque<Integer> parents = new ArrayDeque<>();
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (EXCLUDED.contains(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    int parent = parents.isEmpty() ? parentId : parents.peek();
+                    // Roots keep their full path so ids can be turned back into absolute paths
+                    String name = parent < 0 ? dir.toString() : nameOf(dir);
+                    parents.push(add(target, parent, name, true, attrs.lastModifiedTime().toMillis()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!parents.isEmpty()) {
+                        add(target, parents.peek(), nameOf(file), attrs.isDirectory(), 0);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // Usually a folder we may not open; index its name and retry its contents on refresh
+                    if (!parents.isEmpty()) {
+                        add(target, parents.peek(), nameOf(file), Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS), 0);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    parents.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error indexing: " + start + ", Message: " + e.getMessage());
+        }
+    }
+
+    private int add(IndexTable target, int parent, String name, boolean directory, long modified) {
+        indexedCount++;
+        if (target != table) {
+            // Not published yet, so nobody else can see it
+            return target.add(parent, name, directory, modified);
+        }
+        lock.writeLock().lock();
+        try {
+            return target.add(parent, name, directory, modified);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void mutate(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void publish(IndexTable next) {
+        mutate(() -> table = next);
+    }
+
+    private void save() {
+        if (table.removedCount() > table.size() / 5) {
+            publish(table.compact());
+        }
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            // Only this thread writes, so reading without the lock is safe. Tombstones below the
+            // compaction threshold stay in memory but never reach the file.
+            IndexTable saved = table.removedCount() > 0 ? table.compact() : table;
+            saved.write(temporary);
+            Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            sizeOnDisk = Files.size(indexFile);
+            System.out.printf("Saved filename index: %,d entries, %.1f MB%n", saved.size(), sizeOnDisk / (1024.0 * 1024.0));
+        } catch (IOException e) {
+            System.err.println("Error saving filename index: " + indexFile + ", Message: " + e.getMessage());
+        }
+    }
+
+    // Called on the watcher thread; bursts of events for one folder collapse into one re-list
+    @Override
+    public void onChange(Path directory, WatchEvent.Kind<?> kind, Path child) {
+        if (!ready || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+            return;
+        }
+        if (pendingRescans.add(directory)) {
+            indexer.schedule(() -> {
+                pendingRescans.remove(directory);
+                int id = table.find(directory);
+                if (id >= 0 && relistIfChanged(id, directory)) {
+                    System.out.println("Re-indexed changed folder: " + directory);
+                }
+            }, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static String nameOf(Path path) {
+        return path.getFileName() != null ? path.getFileName().toString() : path.toString();
+    }
+}
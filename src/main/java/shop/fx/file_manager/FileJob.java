@@ -0,0 +1,238 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base for long-running file operations that run off the FX thread. Adds pause and
+ * resume, byte and file counters, and a throughput/ETA message on top of {@link Task}.
+ * Subclasses call {@link #checkpoint()} between units of work and report progress
+ * with {@link #addBytes} and {@link #addFile}. A failure on one path is recorded with
+ * {@link #addError} and the job carries on with the rest. Top-level results are
+ * recorded with {@link #addChange} so the listing can be updated once at the end.
+ * I/O goes through {@link #throttle} so it respects the job's and the global limits.
+ */
+public abstract class FileJob extends Task<Void> {
+
+    private static final long UPDATE_INTERVAL_NANOS = 200_000_000L;
+    private static final long THROTTLE_SLICE_NANOS = 100_000_000L;
+
+    private final String title;
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private final List<ListingChange> changes = Collections.synchronizedList(new ArrayList<>());
+    private final Object pauseLock = new Object();
+    private final Throttle throttle = new Throttle();
+    private volatile long bytesTotal = -1;
+    private volatile long filesTotal = -1;
+    private volatile boolean paused;
+    private volatile String currentName = "";
+    private volatile long currentDone;
+    private volatile long currentSize;
+    private long lastUpdateNanos;
+    private long lastUpdateBytes;
+    private double bytesPerSecond;
+
+    protected FileJob(String title) {
+        this.title = title;
+        updateTitle(title);
+    }
+
+    // The title, readable from any thread
+    public String getJobTitle() {
+        return title;
+    }
+
+    // Paths the job reads or writes, used to find the disks it occupies
+    public abstract List<Path> getPaths();
+
+    // True for jobs that only rename or relink entries; they start at once without taking a device
+    // slot, so a trash or rename isn't queued behind a long copy to the same disk.
+    // Called on the scheduler thread, so it may touch the filesystem.
+    public boolean isMetadataOnly() {
+        return false;
+    }
+
+    // Shown while the job is queued behind others
+    void setWaiting(String message) {
+        updateMessage(message);
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // This job's own limits; all jobs are also subject to Throttle.global()
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    // What the job changed so far, read on the worker threads so applying them costs no I/O
+    public List<ListingChange> getChanges() {
+        synchronized (changes) {
+            return List.copyOf(changes);
+        }
+    }
+
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    public long getFilesDone() {
+        return filesDone.get();
+    }
+
+    // Blocks while the job is paused; throws once it has been cancelled
+    protected void checkpoint() {
+        if (paused) {
+            synchronized (pauseLock) {
+                while (paused && !isCancelled()) {
+                    updateMessage("Paused");
+                    try {
+                        pauseLock.wait(250);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    protected boolean isThrottled() {
+        return throttle.isLimited() || Throttle.global().isLimited();
+    }
+
+    // Call before each unit of I/O; waits as long as the job's and the global limits ask for
+    protected void throttle(long bytes, int ops) {
+        throttle.take(bytes, ops);
+        Throttle.global().take(bytes, ops);
+        while (true) {
+            // Limits can change while we wait, so look again after each slice
+            long delay = Math.max(throttle.delayNanos(), Throttle.global().delayNanos());
+            if (delay <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(Math.min(delay, THROTTLE_SLICE_NANOS) / 1_000_000L + 1);
+            } catch (InterruptedException e) {
+                // Cancel interrupts the job thread
+                Thread.currentThread().interrupt();
+                checkpoint();
+                return;
+            }
+            checkpoint();
+        }
+    }
+
+    // Either total may be -1 while it is still unknown
+    protected void setTotals(long bytes, long files) {
+        bytesTotal = bytes;
+        filesTotal = files;
+        report(true);
+    }
+
+    protected void setCurrent(String name, long done, long size) {
+        currentName = name;
+        currentDone = done;
+        currentSize = size;
+        report(false);
+    }
+
+    protected void addBytes(long bytes) {
+        bytesDone.addAndGet(bytes);
+        report(false);
+    }
+
+    protected void addFile() {
+        filesDone.incrementAndGet();
+        report(false);
+    }
+
+    protected void addChange(ListingChange change) {
+        changes.add(change);
+    }
+
+    protected void addError(String error) {
+        System.err.println(title + ": " + error);
+        errors.add(error);
+    }
+
+    // Safe to call from any of the job's worker threads; updates are rate limited
+    protected synchronized void report(boolean force) {
+        long now = System.nanoTime();
+        if (!force && now - lastUpdateNanos < UPDATE_INTERVAL_NANOS) {
+            return;
+        }
+        long done = bytesDone.get();
+        if (lastUpdateNanos != 0 && now > lastUpdateNanos) {
+            double instant = (done - lastUpdateBytes) / ((now - lastUpdateNanos) / 1e9);
+            // Smooth the rate so the ETA doesn't jump with every small file
+            bytesPerSecond = bytesPerSecond == 0 ? instant : 0.7 * bytesPerSecond + 0.3 * instant;
+        }
+        lastUpdateNanos = now;
+        lastUpdateBytes = done;
+        if (bytesTotal > 0) {
+            updateProgress(done, bytesTotal);
+        } else if (filesTotal > 0) {
+            updateProgress(filesDone.get(), filesTotal);
+        }
+        if (!paused) {
+            updateMessage(progressMessage(done));
+        }
+    }
+
+    // The status line shown under the job's progress bar
+    protected String progressMessage(long done) {
+        StringBuilder message = new StringBuilder();
+        if (!currentName.isEmpty()) {
+            message.append(currentName);
+            if (currentSize > 0 && currentDone < currentSize) {
+                message.append(String.format(" %d%%", currentDone * 100 / currentSize));
+            }
+            message.append(" — ");
+        }
+        if (filesTotal >= 0) {
+            message.append(String.format("%,d of %,d files", filesDone.get(), filesTotal));
+        } else {
+            message.append(String.format("%,d files", filesDone.get()));
+        }
+        if (bytesTotal > 0) {
+            message.append(", ").append(FileSystemUtils.formatBytes(done))
+                    .append(" of ").append(FileSystemUtils.formatBytes(bytesTotal));
+            if (bytesPerSecond > 1) {
+                message.append(", ").append(FileSystemUtils.formatBytes((long) bytesPerSecond)).append("/s");
+                long secondsLeft = (long) ((bytesTotal - done) / bytesPerSecond);
+                message.append(String.format(", %d:%02d left", secondsLeft / 60, secondsLeft % 60));
+            }
+        }
+        return message.toString();
+    }
+}
@@ -1,7 +1,7 @@
 package shop.fx.file_manager;
 import com.catwithawand.borderlessscenefx.scene.BorderlessScene;
 import javafx.application.Application;
-import javafx.scene.image.Image;
+import javafx.application.Platform;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
@@ -11,10 +11,13 @@ public class FileManager extends Application {
 
     @Override
     public void start(Stage primaryStage) {
+        StartupTimer.mark("toolkit started");
         // Initialize UI and controller
         FileManagerUI ui = new FileManagerUI();
         FileSystemUtils fileSystemUtils = new FileSystemUtils();
+        StartupTimer.mark("ui built");
         FileManagerController controller = new FileManagerController(ui, fileSystemUtils);
+        StartupTimer.mark("controller ready");
 
         // Set up the scene
         BorderlessScene scene = new BorderlessScene(primaryStage, StageStyle.TRANSPARENT, ui.getRoot(), Color.TRANSPARENT);
@@ -24,18 +27,27 @@ public class FileManager extends Application {
 
         // Configure and show the stage
         primaryStage.setTitle("File Manager");
-        primaryStage.getIcons().add(new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/logo_64.png"))));
+        primaryStage.getIcons().add(IconRegistry.get("logo_64.png", 64));
         primaryStage.setMinWidth(400);
         primaryStage.setWidth(1000); // Set initial width to 1000
         primaryStage.setHeight(600); // Set initial height to 600
         primaryStage.setScene(scene);
         primaryStage.show();
+        StartupTimer.mark("window shown");
 
-        // Load initial data
-        controller.loadDrives();
+        // Everything the first frame doesn't need waits until it is on screen
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                StartupTimer.markFirstFrame();
+                Platform.runLater(controller::startDeferred);
+            }
+        });
     }
 
     public static void main(String[] args) {
+        StartupTimer.mark("main");
         launch(args);
     }
 }
\ No newline at end of file
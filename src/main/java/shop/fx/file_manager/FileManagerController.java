@@ -1,7 +1,16 @@
 package shop.fx.file_manager;
 
-import javafx.beans.property.SimpleObjectProperty;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableSet;
+import javafx.collections.transformation.FilteredList;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.scene.Node;
 import javafx.scene.image.Image;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
@@ -9,42 +18,118 @@ import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.prefs.Preferences;
 
 public class FileManagerController {
 
     private final FileManagerUI ui;
     private final FileSystemUtils fileSystemUtils;
+    private final DirectoryWatcher directoryWatcher;
+    private final DirectoryCache directoryCache;
+    private final DirectoryLoader directoryLoader;
+    private final BatchPublisher<ListingChange> externalChanges;
+    private final SearchEngine searchEngine;
+    private final FileIndex fileIndex;
+    private final FolderSizes folderSizes = new FolderSizes();
+    private final Thumbnails thumbnails = new Thumbnails();
+    private final DriveProber driveProber = new DriveProber();
+    private final ExecutorService diskUsageExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "disk-usage");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private DiskUsageScan diskUsageScan;
+    private final ExecutorService sortExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "listing-sort");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Bumped whenever entries are added, removed or replaced, but not when they are only reordered
+    private int listingVersion;
+    // Name order of the listing's entries, reused by every sort until the entries change
+    private ListingSorter.Keys sortKeys;
+    private int sortKeysVersion = -1;
+    private SortField sortField;
+    private boolean sortDescending;
+    // True while a background sort may still reorder the listing
+    private boolean sortPending;
+    // Total sizes of the current folder's subfolders, filled in as they are computed
+    private final Map<Path, Long> folderSizeByPath = new HashMap<>();
+    private Task<List<FileEntry>> indexSearch;
+    private final JobScheduler jobScheduler = new JobScheduler();
+    // The current directory's entries; the file list shows either a filtered view of them
+    // or the results of a recursive search
+    private final ObservableList<FileEntry> listing;
+    private final FilteredList<FileEntry> filteredListing;
+    private final ObservableList<FileEntry> searchResults;
+    private volatile Path watchedDirectory;
     private Path currentPath;
-    private final List<Path> navigationHistory;
-    private int historyIndex;
-    private final SimpleObjectProperty<Path> copiedPathProperty;
-    private Path cutPath;
+    private final NavigationHistory history;
+    // View state to put back once the listing being shown has been sorted
+    private NavigationHistory.Snapshot pendingRestore;
+    // Changes, and what waits on them, that arrive while a listing streams in. A directory stream
+    // may or may not see entries created or removed while it is read, so they are applied once it is done.
+    private final List<ListingChange> changesWhileListing = new ArrayList<>();
+    private final List<Runnable> actionsWhenListed = new ArrayList<>();
+    // The search the view currently reflects, so running the same one again is skipped
+    private String appliedQuery = "";
+    private SearchScope appliedScope;
+    // Paths copied or cut for the next paste
+    private final ObservableSet<Path> clipboard;
+    private boolean clipboardCut;
     private final Image maximizeImage;
     private final Image restoreImage;
     private final List<Path> pinnedFolders;
     private static final String PREFS_NODE = "shop.fx.file_manager.pinned_folders";
     private static final Preferences prefs = Preferences.userNodeForPackage(FileManagerController.class);
+    private static final String SORT_FIELD_KEY = "shop.fx.file_manager.sort_field";
+    private static final String SORT_DESCENDING_KEY = "shop.fx.file_manager.sort_descending";
+    private static final String DETAIL_MODE_KEY = "shop.fx.file_manager.detail_mode";
+    // Listings up to this size sort on the FX thread in well under a frame
+    private static final int ASYNC_SORT_THRESHOLD = 5000;
+    // Changed entries placed one by one into a large sorted listing; more than this and it is re-sorted
+    private static final int MAX_INSERTED = 64;
 
     public FileManagerController(FileManagerUI ui, FileSystemUtils fileSystemUtils) {
         this.ui = ui;
         this.fileSystemUtils = fileSystemUtils;
-        this.navigationHistory = new ArrayList<>();
-        this.historyIndex = -1;
-        this.copiedPathProperty = new SimpleObjectProperty<>(null);
-        this.cutPath = null;
+        this.directoryWatcher = new DirectoryWatcher();
+        this.directoryCache = new DirectoryCache(directoryWatcher);
+        this.directoryLoader = new DirectoryLoader(directoryCache);
+        this.externalChanges = new BatchPublisher<>(5000, this::applyChanges);
+        directoryWatcher.addListener(this::onDirectoryChange);
+        this.searchEngine = new SearchEngine();
+        this.fileIndex = new FileIndex(directoryWatcher);
+        this.listing = FXCollections.observableArrayList();
+        this.filteredListing = new FilteredList<>(listing);
+        this.searchResults = FXCollections.observableArrayList();
+        ui.getFileListView().setItems(filteredListing);
+        // Listens after onDirectoryChange, so a change is always queued before the history drops its listing
+        this.history = new NavigationHistory(directoryWatcher);
+        this.clipboard = FXCollections.observableSet(new LinkedHashSet<>());
         this.pinnedFolders = new ArrayList<>();
-        maximizeImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/maximize_64.png")));
-        restoreImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/restore_64.png")));
-        if (maximizeImage.isError() || restoreImage.isError()) {
-            System.err.println("Failed to load maximize_64.png or restore_64.png");
-        }
+        this.sortField = sortFieldFromPreferences();
+        this.sortDescending = prefs.getBoolean(SORT_DESCENDING_KEY, false);
+        maximizeImage = IconRegistry.get("maximize_64.png", 16);
+        restoreImage = IconRegistry.get("restore_64.png", 16);
         initialize();
 //         prefs.remove(PREFS_NODE);
-        loadPinnedFolders();
     }
 
     private void initialize() {
@@ -52,43 +137,868 @@ public class FileManagerController {
         EventHandlerSetup eventHandlerSetup = new EventHandlerSetup(ui, fileSystemUtils, this);
         cellFactorySetup.setupCellFactories();
         eventHandlerSetup.setupEventHandlers();
+        // Drives are enumerated once here; their names and capacity arrive in the background
+        driveProber.start();
+        ui.getDriveListView().setItems(driveProber.getDrives());
         loadDrives();
     }
 
+    // Startup work the first frame doesn't need; FX thread, once the window is on screen
+    public void startDeferred() {
+        fileIndex.start(outermost(driveProber.getRoots()));
+        StartupTimer.mark("index started");
+        loadPinnedFolders(() -> {
+            StartupTimer.mark("pinned folders loaded");
+            StartupTimer.report();
+        });
+    }
+
     public void showErrorDialog(String title, String message) {
         CustomErrorDialog dialog = new CustomErrorDialog((Stage) ui.getRoot().getScene().getWindow(), title, message);
         dialog.showAndWait();
     }
 
+    // True if the user confirmed; anything else, including closing the dialog, is a no
+    public boolean showConfirmDialog(String title, String message, String confirmText) {
+        CustomConfirmDialog dialog = new CustomConfirmDialog((Stage) ui.getRoot().getScene().getWindow(), title, message, confirmText);
+        return dialog.showAndWait();
+    }
+
+    // Queues a copy/move/delete job to run in the background and shows it in the jobs panel
+    public void submitJob(FileJob job) {
+        ui.getTransferPanel().addJob(job);
+        job.addEventHandler(WorkerStateEvent.WORKER_STATE_SUCCEEDED, _ -> {
+            applyJobChanges(job);
+            reportJob(job, null);
+        });
+        job.addEventHandler(WorkerStateEvent.WORKER_STATE_FAILED, _ -> {
+            applyJobChanges(job);
+            reportJob(job, job.getException());
+        });
+        job.addEventHandler(WorkerStateEvent.WORKER_STATE_CANCELLED, _ -> {
+            applyJobChanges(job);
+            System.out.println("Cancelled: " + job.getTitle());
+        });
+        jobScheduler.submit(job);
+    }
+
+    // Applies everything a job did in one batch, including after a cancel or failure part way
+    private void applyJobChanges(FileJob job) {
+        List<ListingChange> changes = job.getChanges();
+        for (ListingChange change : changes) {
+            if (change.kind() == ListingChange.Kind.REMOVED || change.kind() == ListingChange.Kind.RENAMED) {
+                clipboard.remove(change.path());
+                if (isFolderPinned(change.path())) {
+                    unpinFolder(change.path());
+                }
+            }
+        }
+        applyChanges(changes);
+    }
+
+    private void reportJob(FileJob job, Throwable failure) {
+        List<String> errors = job.getErrors();
+        if (failure != null) {
+            System.err.println("Failed: " + job.getTitle() + ", Message: " + failure.getMessage());
+            showErrorDialog("Error", job.getTitle() + " failed: " + failure.getMessage());
+        } else if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder(job.getTitle() + " finished with " + errors.size() + " errors:");
+            for (String error : errors.subList(0, Math.min(5, errors.size()))) {
+                message.append("\n").append(error);
+            }
+            if (errors.size() > 5) {
+                message.append("\n...");
+            }
+            showErrorDialog("Error", message.toString());
+        } else {
+            System.out.println("Finished: " + job.getTitle());
+        }
+    }
+
+    // Opens a folder as a new step in the history
+    public void openFolder(Path folder) throws IOException {
+        saveSnapshot();
+        history.visit(folder);
+        loadDirectory(folder);
+    }
+
+    // Shows the previous folder as it was left, or the drives from the first one
+    public void goBack() throws IOException {
+        saveSnapshot();
+        Path previous = history.back();
+        if (previous == null) {
+            loadDrives();
+        } else {
+            loadDirectory(previous, true, null);
+        }
+    }
+
+    public void goForward() throws IOException {
+        if (!history.canGoForward()) {
+            return;
+        }
+        saveSnapshot();
+        loadDirectory(history.forward(), true, null);
+    }
+
+    public void goHome() {
+        loadDrives();
+        history.clear();
+    }
+
+    // Records how the current folder looks before navigating away from it
+    private void saveSnapshot() {
+        if (currentPath == null || !currentPath.equals(history.current()) || directoryLoader.isLoading()) {
+            return;
+        }
+        List<Path> selection = new ArrayList<>();
+        Path firstVisible = null;
+        if (!isShowingSearchResults()) {
+            for (FileEntry entry : ui.getFileSelection().getSelectedItems()) {
+                if (entry != null) {
+                    selection.add(entry.path());
+                }
+            }
+            int first = ui.getFirstVisibleIndex();
+            if (first >= 0 && first < filteredListing.size()) {
+                firstVisible = filteredListing.get(first).path();
+            }
+        }
+        // A null sort field marks a listing whose order isn't settled yet
+        history.save(new NavigationHistory.Snapshot(List.copyOf(listing), sortKeysVersion == listingVersion ? sortKeys : null,
+                sortPending ? null : sortField, sortDescending, firstVisible, selection, appliedQuery, appliedScope));
+        // A change queued before the history started watching would otherwise go unnoticed
+        if (!externalChanges.isEmpty()) {
+            history.invalidate(currentPath);
+        }
+    }
+
+    // Re-applies a snapshot's search, selection and scroll position once its folder is listed and sorted
+    private void restoreView() {
+        NavigationHistory.Snapshot snapshot = pendingRestore;
+        pendingRestore = null;
+        if (snapshot == null) {
+            return;
+        }
+        if (!snapshot.query().isEmpty()) {
+            ui.getSearchScopeBox().setValue(snapshot.scope());
+            ui.getSearchField().setText(snapshot.query());
+            // The field's listener searches only after its debounce, and that repeat is then skipped
+            search(snapshot.query(), snapshot.scope());
+        }
+        if (isShowingSearchResults()) {
+            return;
+        }
+        Set<Path> selected = new HashSet<>(snapshot.selection());
+        int firstVisible = -1;
+        int firstSelected = -1;
+        ui.getFileSelection().clearSelection();
+        for (int i = 0; i < filteredListing.size(); i++) {
+            Path path = filteredListing.get(i).path();
+            if (selected.contains(path)) {
+                ui.getFileSelection().select(i);
+                if (firstSelected < 0) {
+                    firstSelected = i;
+                }
+            }
+            if (path.equals(snapshot.firstVisible())) {
+                firstVisible = i;
+            }
+        }
+        int scrollIndex = firstVisible >= 0 ? firstVisible : firstSelected;
+        if (scrollIndex >= 0) {
+            ui.scrollFileViewTo(scrollIndex);
+        }
+    }
+
     public void loadDrives() {
-        ui.getDriveListView().getItems().clear();
-        fileSystemUtils.loadDrives(ui.getDriveListView());
-        System.out.println("Drive list items: " + ui.getDriveListView().getItems().size());
-        fileSystemUtils.loadDrivesInGrid(ui.getMainContent());
+        directoryLoader.cancel();
+        cancelFolderSizes();
+        cancelDiskUsage();
+        cancelSearch();
+        pendingRestore = null;
+        appliedQuery = "";
+        appliedScope = null;
+        watchDirectory(null);
+        clearStatus();
+        fileSystemUtils.loadDrivesInGrid(ui.getMainContent(), driveProber.getDrives(), this::analyzeDrive);
         currentPath = null;
-        cutPath = null;
-        setCopiedPath(null);
+        clearClipboard();
         ui.getPathField().setText("");
         ui.getSearchField().setText("");
     }
 
     public void loadDirectory(Path directory) throws IOException {
+        loadDirectory(directory, null);
+    }
+
+    public void loadDirectory(Path directory, Runnable onLoaded) throws IOException {
+        loadDirectory(directory, false, onLoaded);
+    }
+
+    // With restore, shows the directory the way the history's snapshot says it was left: from the kept
+    // listing if there is one, otherwise listed afresh with the view state re-applied
+    private void loadDirectory(Path directory, boolean restore, Runnable onLoaded) throws IOException {
         if (!Files.isReadable(directory)) {
             throw new AccessDeniedException(directory.toString());
         }
-        ui.getMainContent().getChildren().set(1, ui.getFileListView());
-        ui.getFileListView().getItems().clear();
-        fileSystemUtils.loadDirectory(directory, ui.getFileListView());
+        directoryLoader.cancel();
+        changesWhileListing.clear();
+        actionsWhenListed.clear();
+        cancelSearch();
+        cancelFolderSizes();
+        cancelDiskUsage();
+        ui.getMainContent().getChildren().set(1, ui.getFileView());
+        ui.getDetailView().clearAttributes();
+        // Clear the query while no folder is current so the search listener doesn't re-list anything
+        currentPath = null;
+        ui.getSearchField().setText("");
+        showListing();
+        filteredListing.setPredicate(null);
+        listing.clear();
+        listingVersion++;
+        sortPending = false;
+        appliedQuery = "";
+        appliedScope = null;
         currentPath = directory;
         ui.getPathField().setText(directory.toString());
-        ui.getSearchField().setText("");
+        watchDirectory(directory);
+        // Taken only now that the directory is watched here too, so no change can slip between the two watches
+        NavigationHistory.Snapshot snapshot = restore ? history.take() : null;
+        pendingRestore = snapshot;
+
+        if (snapshot != null && snapshot.listing() != null) {
+            System.out.println("Restoring snapshot of: " + directory);
+            clearStatus();
+            listing.setAll(snapshot.listing());
+            listingVersion++;
+            if (snapshot.keys() != null) {
+                sortKeys = snapshot.keys();
+                sortKeysVersion = listingVersion;
+            }
+            showItemCount();
+            computeFolderSizes();
+            if (snapshot.keys() != null && snapshot.sortField() == sortField && snapshot.sortDescending() == sortDescending) {
+                restoreView();
+            } else {
+                sortListing();
+            }
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+            return;
+        }
+
+        List<FileEntry> cached = directoryCache.get(directory);
+        if (cached != null) {
+            System.out.println("Showing cached listing of: " + directory);
+            clearStatus();
+            listing.setAll(cached);
+            listingVersion++;
+            showItemCount();
+            computeFolderSizes();
+            // Sorted last: it may restore a search, which takes over the status line
+            sortListing();
+            if (onLoaded != null) {
+                onLoaded.run();
+            }
+            return;
+        }
+
+        Task<Integer> task = directoryLoader.load(directory,
+                batch -> {
+                    listing.addAll(batch);
+                    listingVersion++;
+                },
+                () -> {
+                    clearStatus();
+                    showItemCount();
+                    computeFolderSizes();
+                    // Entries stream in as the directory returns them; order them once all are in
+                    sortListing();
+                    applyChangesWhileListing();
+                    if (onLoaded != null) {
+                        onLoaded.run();
+                    }
+                },
+                e -> {
+                    changesWhileListing.clear();
+                    actionsWhenListed.clear();
+                    clearStatus();
+                    System.err.println("Error loading directory: " + directory + ", Message: " + e.getMessage());
+                    if (e instanceof AccessDeniedException) {
+                        showErrorDialog("Access Denied", "Access Denied: Cannot open " + directory);
+                    } else {
+                        showErrorDialog("Error", "Error loading directory: " + e.getMessage());
+                    }
+                });
+        jobScheduler.prioritize(task);
+        ui.getStatusLabel().textProperty().bind(task.messageProperty());
+        ui.getStatusProgress().progressProperty().bind(task.progressProperty());
+        ui.getStatusProgress().setVisible(true);
+    }
+
+    // Re-lists the current directory from disk, e.g. after this app changed it
+    public void reloadDirectory() throws IOException {
+        reloadDirectory(null);
+    }
+
+    public void reloadDirectory(Runnable onLoaded) throws IOException {
+        directoryCache.invalidate(currentPath);
+        loadDirectory(currentPath, onLoaded);
+    }
+
+    public void applyChange(ListingChange change) {
+        applyChanges(List.of(change));
+    }
+
+    // Applies changes to the current listing in place, keeping scroll position and selection.
+    // Changes outside the current directory are ignored.
+    public void applyChanges(List<ListingChange> changes) {
+        if (currentPath == null) {
+            return;
+        }
+        if (directoryLoader.isLoading()) {
+            changesWhileListing.addAll(changes);
+            return;
+        }
+        ObservableList<FileEntry> items = listing;
+        removeFromSearchResults(changes);
+        FileEntry selected = ui.getFileSelection().getSelectedItem();
+        Path selectedPath = selected != null ? selected.path() : null;
+        Map<Path, Integer> indexes = null;
+        Set<FileEntry> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<FileEntry> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ListingChange change : changes) {
+            boolean fromCurrent = currentPath.equals(change.path().getParent());
+            boolean intoCurrent = change.entry() != null && currentPath.equals(change.entry().path().getParent());
+            if (!fromCurrent && !intoCurrent) {
+                continue;
+            }
+            if (indexes == null) {
+                indexes = indexByPath(items);
+            }
+            switch (change.kind()) {
+                case REMOVED -> {
+                    Integer index = indexes.remove(change.path());
+                    if (index != null) {
+                        removed.add(items.get(index));
+                    }
+                }
+                case ADDED, MODIFIED -> {
+                    putEntry(items, indexes, change.entry());
+                    placed.add(change.entry());
+                }
+                case RENAMED -> {
+                    Integer index = fromCurrent ? indexes.remove(change.path()) : null;
+                    if (change.path().equals(selectedPath)) {
+                        selectedPath = change.entry().path();
+                    }
+                    if (intoCurrent) {
+                        placed.add(change.entry());
+                    }
+                    if (!intoCurrent) {
+                        if (index != null) {
+                            removed.add(items.get(index));
+                        }
+                    } else if (index != null) {
+                        // A rename onto an existing name replaces that entry
+                        Integer replaced = indexes.get(change.entry().path());
+                        if (replaced != null) {
+                            removed.add(items.get(replaced));
+                        }
+                        items.set(index, change.entry());
+                        indexes.put(change.entry().path(), index);
+                    } else {
+                        putEntry(items, indexes, change.entry());
+                    }
+                }
+            }
+        }
+        if (indexes == null) {
+            return;
+        }
+        if (!removed.isEmpty()) {
+            items.removeAll(removed);
+        }
+        listingVersion++;
+        if (!placed.isEmpty()) {
+            placeSorted(items, placed);
+        }
+        directoryCache.invalidate(currentPath);
+        if (!isShowingSearchResults()) {
+            showItemCount();
+        }
+        FileEntry nowSelected = ui.getFileSelection().getSelectedItem();
+        if (!isShowingSearchResults() && selectedPath != null
+                && (nowSelected == null || !nowSelected.path().equals(selectedPath))) {
+            for (int i = 0; i < filteredListing.size(); i++) {
+                if (filteredListing.get(i).path().equals(selectedPath)) {
+                    ui.getFileSelection().select(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    // Runs action once the listing being loaded is complete and changes made meanwhile are in it,
+    // or right away if none is loading; dropped if the listing is replaced or fails
+    public void whenListed(Runnable action) {
+        if (directoryLoader.isLoading()) {
+            actionsWhenListed.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private void applyChangesWhileListing() {
+        // Already listed ones are replaced by path, so applying them again is harmless
+        if (!changesWhileListing.isEmpty()) {
+            List<ListingChange> changes = new ArrayList<>(changesWhileListing);
+            changesWhileListing.clear();
+            applyChanges(changes);
+        }
+        List<Runnable> actions = new ArrayList<>(actionsWhenListed);
+        actionsWhenListed.clear();
+        actions.forEach(Runnable::run);
+    }
+
+    // Search results can come from anywhere below the current folder, so match them by path
+    private void removeFromSearchResults(List<ListingChange> changes) {
+        if (searchResults.isEmpty()) {
+            return;
+        }
+        Map<Path, ListingChange> byPath = new HashMap<>();
+        for (ListingChange change : changes) {
+            if (change.kind() == ListingChange.Kind.REMOVED || change.kind() == ListingChange.Kind.RENAMED) {
+                byPath.put(change.path(), change);
+            }
+        }
+        for (int i = searchResults.size() - 1; i >= 0 && !byPath.isEmpty(); i--) {
+            ListingChange change = byPath.remove(searchResults.get(i).path());
+            if (change == null) {
+                continue;
+            }
+            if (change.kind() == ListingChange.Kind.RENAMED) {
+                searchResults.set(i, change.entry());
+            } else {
+                searchResults.remove(i);
+            }
+        }
+    }
+
+    public void search(String query, SearchScope scope) {
+        if (currentPath == null) {
+            return;
+        }
+        if (query.equals(appliedQuery) && scope == appliedScope) {
+            return;
+        }
+        cancelSearch();
+        appliedQuery = query;
+        appliedScope = scope;
+        if (query.isEmpty()) {
+            showListing();
+            filteredListing.setPredicate(null);
+            clearStatus();
+            showItemCount();
+            return;
+        }
+        if (scope == SearchScope.FOLDER) {
+            // Filter the listing we already hold instead of re-reading the directory
+            showListing();
+            String lowerQuery = query.toLowerCase();
+            filteredListing.setPredicate(entry -> entry.nameContains(lowerQuery));
+            clearStatus();
+            showItemCount();
+            return;
+        }
+        searchResults.clear();
+        ui.getFileListView().setItems(searchResults);
+        if (scope == SearchScope.EVERYWHERE) {
+            searchIndex(query);
+            return;
+        }
+        Task<Long> task = searchEngine.search(currentPath, query, searchResults::addAll, this::finishStatus);
+        ui.getStatusLabel().textProperty().bind(task.messageProperty());
+        ui.getStatusProgress().progressProperty().bind(task.progressProperty());
+        ui.getStatusProgress().setVisible(true);
+    }
+
+    private void searchIndex(String query) {
+        Task<List<FileEntry>> task = fileIndex.search(query);
+        indexSearch = task;
+        task.setOnSucceeded(_ -> {
+            if (indexSearch == task) {
+                indexSearch = null;
+                searchResults.setAll(task.getValue());
+                finishStatus();
+            }
+        });
+        task.setOnFailed(_ -> {
+            if (indexSearch == task) {
+                indexSearch = null;
+                System.err.println("Index search failed for: " + query + ", Message: " + task.getException().getMessage());
+                finishStatus();
+            }
+        });
+        ui.getStatusLabel().textProperty().bind(task.messageProperty());
+        ui.getStatusProgress().progressProperty().bind(task.progressProperty());
+        ui.getStatusProgress().setVisible(true);
+    }
+
+    private void cancelSearch() {
+        searchEngine.cancel();
+        if (indexSearch != null) {
+            indexSearch.cancel();
+            indexSearch = null;
+        }
+    }
+
+    // Swaps the list for the table or back, keeping the selection
+    public void setDetailMode(boolean detailMode) {
+        prefs.putBoolean(DETAIL_MODE_KEY, detailMode);
+        Node shown = detailMode ? ui.getFileListView() : ui.getDetailView();
+        List<Integer> selected = List.copyOf((detailMode ? ui.getFileListView().getSelectionModel()
+                : ui.getDetailView().getSelectionModel()).getSelectedIndices());
+        if (ui.getMainContent().getChildren().get(1) == shown) {
+            ui.getMainContent().getChildren().set(1, ui.getFileView());
+        }
+        ui.getFileSelection().clearSelection();
+        for (int index : selected) {
+            ui.getFileSelection().select(index);
+        }
+        if (!selected.isEmpty()) {
+            ui.scrollFileViewTo(selected.getFirst());
+        }
+    }
+
+    public boolean isDetailModeSaved() {
+        return prefs.getBoolean(DETAIL_MODE_KEY, false);
+    }
+
+    // Renames an entry on disk and updates the listing in place
+    public void renameEntry(FileEntry item, String newName) {
+        try {
+            Path newPath = item.path().resolveSibling(newName);
+            Files.move(item.path(), newPath, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Renamed " + item.path() + " to " + newPath);
+            applyChange(ListingChange.renamed(item.path(), newPath));
+        } catch (IOException e) {
+            System.err.println("Error renaming: " + e.getMessage());
+            showErrorDialog("Error", "Error renaming file or folder: " + e.getMessage());
+        }
+    }
+
+    public SortField getSortField() {
+        return sortField;
+    }
+
+    public boolean isSortDescending() {
+        return sortDescending;
+    }
+
+    public void setSort(SortField field, boolean descending) {
+        if (field == sortField && descending == sortDescending) {
+            return;
+        }
+        sortField = field;
+        sortDescending = descending;
+        prefs.put(SORT_FIELD_KEY, field.name());
+        prefs.putBoolean(SORT_DESCENDING_KEY, descending);
+        if (!directoryLoader.isLoading()) {
+            sortListing();
+        }
+    }
+
+    private static SortField sortFieldFromPreferences() {
+        try {
+            return SortField.valueOf(prefs.get(SORT_FIELD_KEY, SortField.NAME.name()));
+        } catch (IllegalArgumentException e) {
+            return SortField.NAME;
+        }
+    }
+
+    // Small listings are sorted right away; large ones on a worker, swapped in when done
+    private void sortListing() {
+        ListingSorter.Keys keys = sortKeysVersion == listingVersion ? sortKeys : null;
+        if (listing.size() < ASYNC_SORT_THRESHOLD) {
+            if (keys == null) {
+                keys = ListingSorter.keysOf(listing);
+            }
+            applySorted(keys, ListingSorter.sort(keys, sortField, sortDescending), listingVersion);
+            return;
+        }
+        List<FileEntry> snapshot = keys == null ? new ArrayList<>(listing) : null;
+        ListingSorter.Keys knownKeys = keys;
+        int version = listingVersion;
+        Path directory = currentPath;
+        SortField field = sortField;
+        boolean descending = sortDescending;
+        sortPending = true;
+        sortExecutor.execute(() -> {
+            long start = System.nanoTime();
+            ListingSorter.Keys listingKeys = knownKeys != null ? knownKeys : ListingSorter.keysOf(snapshot);
+            long keyed = System.nanoTime();
+            List<FileEntry> sorted = ListingSorter.sort(listingKeys, field, descending);
+            System.out.printf("Sorted %d entries by %s in %.1f ms%s%n", sorted.size(), field, (System.nanoTime() - keyed) / 1e6,
+                    knownKeys != null ? "" : String.format(" after %.1f ms computing name order", (keyed - start) / 1e6));
+            Platform.runLater(() -> {
+                // Drop the result if the folder or the order was changed in the meantime
+                if (directory != null && directory.equals(currentPath) && field == sortField && descending == sortDescending) {
+                    sortPending = false;
+                    applySorted(listingKeys, sorted, version);
+                }
+            });
+        });
+    }
+
+    private void applySorted(ListingSorter.Keys keys, List<FileEntry> sorted, int version) {
+        List<FileEntry> result = sorted;
+        if (version == listingVersion) {
+            sortKeys = keys;
+            sortKeysVersion = version;
+        } else {
+            // The listing changed while it was sorted: keep the order of what is still there and place the rest
+            Set<FileEntry> current = Collections.newSetFromMap(new IdentityHashMap<>(listing.size() * 2));
+            current.addAll(listing);
+            result = new ArrayList<>(listing.size());
+            for (FileEntry entry : sorted) {
+                if (current.remove(entry)) {
+                    result.add(entry);
+                }
+            }
+            insertSorted(result, current, ListingSorter.comparator(sortField, sortDescending));
+        }
+        Set<Path> selectedPaths = new HashSet<>();
+        for (FileEntry entry : ui.getFileSelection().getSelectedItems()) {
+            selectedPaths.add(entry.path());
+        }
+        listing.setAll(result);
+        if (!selectedPaths.isEmpty() && !isShowingSearchResults()) {
+            for (int i = 0; i < filteredListing.size(); i++) {
+                if (selectedPaths.contains(filteredListing.get(i).path())) {
+                    ui.getFileSelection().select(i);
+                }
+            }
+        }
+        restoreView();
+    }
+
+    private void showListing() {
+        if (ui.getFileListView().getItems() != filteredListing) {
+            ui.getFileListView().setItems(filteredListing);
+            searchResults.clear();
+        }
+    }
+
+    private void showItemCount() {
+        if (filteredListing.getPredicate() == null) {
+            ui.getStatusLabel().setText(listing.size() + " items");
+        } else {
+            ui.getStatusLabel().setText(filteredListing.size() + " of " + listing.size() + " items");
+        }
+    }
+
+    public Thumbnails getThumbnails() {
+        return thumbnails;
+    }
+
+    // Returns -1 until the folder's size is known
+    public long getFolderSize(Path folder) {
+        return folderSizeByPath.getOrDefault(folder, -1L);
+    }
+
+    private void computeFolderSizes() {
+        List<Path> folders = new ArrayList<>();
+        for (FileEntry entry : listing) {
+            if (entry.directory() && entry.access() == FileEntry.Access.READABLE) {
+                folders.add(entry.path());
+            }
+        }
+        if (folders.isEmpty()) {
+            return;
+        }
+        folderSizes.compute(folders, sizes -> {
+            for (FolderSizes.FolderSize size : sizes) {
+                folderSizeByPath.put(size.folder(), size.bytes());
+            }
+            ui.refreshFileView();
+        });
+    }
+
+    // Replaces the drive grid with the disk-usage analyzer for one drive
+    public void analyzeDrive(DriveInfo drive) {
+        cancelDiskUsage();
+        DiskUsageScan scan = new DiskUsageScan(drive.getPath());
+        DiskUsageView view = new DiskUsageView(scan, folder -> {
+            try {
+                openFolder(folder);
+            } catch (IOException e) {
+                System.err.println("Error opening folder: " + folder + ", Message: " + e.getMessage());
+                showErrorDialog("Error", "Error opening folder: " + e.getMessage());
+            }
+        });
+        VBox.setVgrow(view, Priority.ALWAYS);
+        ui.getMainContent().getChildren().set(1, view);
+        diskUsageScan = scan;
+        diskUsageExecutor.execute(scan);
+    }
+
+    private void cancelDiskUsage() {
+        if (diskUsageScan != null) {
+            diskUsageScan.cancel();
+            diskUsageScan = null;
+        }
+    }
+
+    private void cancelFolderSizes() {
+        folderSizes.cancel();
+        folderSizeByPath.clear();
+    }
+
+    public boolean isShowingSearchResults() {
+        return ui.getFileListView().getItems() == searchResults;
+    }
+
+    // Moves entries that were put at the end or replaced in place to where the sort order wants them
+    private void placeSorted(ObservableList<FileEntry> items, Set<FileEntry> placed) {
+        Comparator<FileEntry> comparator = ListingSorter.comparator(sortField, sortDescending);
+        if (items.size() < ASYNC_SORT_THRESHOLD) {
+            // The rest is still sorted, which the merge sort finds in close to linear time
+            items.sort(comparator);
+            return;
+        }
+        if (placed.size() > MAX_INSERTED) {
+            // Compact rows build their sort key on every comparison, so a large listing is re-sorted from keys
+            sortListing();
+            return;
+        }
+        List<FileEntry> moved = new ArrayList<>(placed.size());
+        for (FileEntry entry : items) {
+            if (placed.contains(entry)) {
+                moved.add(entry);
+            }
+        }
+        items.removeAll(placed);
+        insertSorted(items, moved, comparator);
+    }
+
+    // Adds entries to a sorted list at their places; many at once are sorted in with the rest
+    private static void insertSorted(List<FileEntry> sorted, Collection<FileEntry> entries, Comparator<FileEntry> comparator) {
+        if (entries.size() > MAX_INSERTED) {
+            sorted.addAll(entries);
+            sorted.sort(comparator);
+            return;
+        }
+        for (FileEntry entry : entries) {
+            int index = Collections.binarySearch(sorted, entry, comparator);
+            sorted.add(index < 0 ? -index - 1 : index, entry);
+        }
+    }
+
+    private static Map<Path, Integer> indexByPath(List<FileEntry> items) {
+        Map<Path, Integer> indexes = new HashMap<>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            indexes.put(items.get(i).path(), i);
+        }
+        return indexes;
+    }
+
+    private static void putEntry(List<FileEntry> items, Map<Path, Integer> indexes, FileEntry entry) {
+        Integer index = indexes.get(entry.path());
+        if (index != null) {
+            items.set(index, entry);
+        } else {
+            indexes.put(entry.path(), items.size());
+            items.add(entry);
+        }
+    }
+
+    private void watchDirectory(Path directory) {
+        if (directory != null && directory.equals(watchedDirectory)) {
+            return;
+        }
+        if (watchedDirectory != null) {
+            directoryWatcher.unwatch(watchedDirectory);
+        }
+        watchedDirectory = directory != null && directoryWatcher.watch(directory) ? directory : null;
+    }
+
+    // Called on the watcher thread; attributes of changed entries are read here, off the FX thread
+    private void onDirectoryChange(Path directory, WatchEvent.Kind<?> kind, Path child) {
+        if (!directory.equals(watchedDirectory)) {
+            return;
+        }
+        if (kind == StandardWatchEventKinds.OVERFLOW || child == null) {
+            Platform.runLater(() -> {
+                if (directory.equals(currentPath)) {
+                    try {
+                        reloadDirectory();
+                    } catch (IOException e) {
+                        System.err.println("Error reloading changed directory: " + directory + ", Message: " + e.getMessage());
+                    }
+                }
+            });
+        } else if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            externalChanges.offer(ListingChange.added(child));
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            externalChanges.offer(ListingChange.removed(child));
+        } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+            externalChanges.offer(ListingChange.modified(child));
+        }
+    }
+
+    // Stops following a finished task but keeps its last message
+    private void finishStatus() {
+        String message = ui.getStatusLabel().getText();
+        clearStatus();
+        ui.getStatusLabel().setText(message);
+    }
+
+    private void clearStatus() {
+        ui.getStatusLabel().textProperty().unbind();
+        ui.getStatusLabel().setText("");
+        ui.getStatusProgress().progressProperty().unbind();
+        ui.getStatusProgress().setVisible(false);
     }
 
     public void loadPinnedFolders() {
+        loadPinnedFolders(() -> {
+        });
+    }
+
+    // Pinned folders may sit on slow or missing drives, so they are checked off the FX thread
+    private void loadPinnedFolders(Runnable onLoaded) {
+        for (Path folder : pinnedFolders) {
+            fileIndex.unwatch(folder);
+        }
         pinnedFolders.clear();
         ui.getPinnedFoldersListView().getItems().clear();
         String pinnedPaths = prefs.get(PREFS_NODE, "");
         System.out.println("Raw preferences content: " + pinnedPaths);
+        Thread validator = new Thread(() -> {
+            List<Path> folders = validPinnedFolders(pinnedPaths);
+            Platform.runLater(() -> {
+                for (Path folder : folders) {
+                    if (!pinnedFolders.contains(folder)) {
+                        pinnedFolders.add(folder);
+                        ui.getPinnedFoldersListView().getItems().add(folder);
+                        fileIndex.watch(folder);
+                        System.out.println("Loaded pinned folder: " + folder);
+                    }
+                }
+                ui.getPinnedFoldersListView().refresh();
+                savePinnedFolders();
+                onLoaded.run();
+            });
+        }, "pinned-folders");
+        validator.setDaemon(true);
+        validator.start();
+    }
+
+    private static List<Path> validPinnedFolders(String pinnedPaths) {
+        List<Path> folders = new ArrayList<>();
         if (pinnedPaths != null && !pinnedPaths.trim().isEmpty()) {
             String[] paths = pinnedPaths.split(";");
             for (String path : paths) {
@@ -99,11 +1009,7 @@ public class FileManagerController {
                 try {
                     Path folder = Paths.get(path);
                     if (Files.exists(folder) && Files.isDirectory(folder) && Files.isReadable(folder)) {
-                        if (!pinnedFolders.contains(folder)) {
-                            pinnedFolders.add(folder);
-                            ui.getPinnedFoldersListView().getItems().add(folder);
-                            System.out.println("Loaded pinned folder: " + folder);
-                        }
+                        folders.add(folder);
                     } else {
                         System.err.println("Skipping invalid pinned item: " + path + " (not a directory, does not exist, or not readable)");
                     }
@@ -112,8 +1018,7 @@ public class FileManagerController {
                 }
             }
         }
-        ui.getPinnedFoldersListView().refresh();
-        savePinnedFolders();
+        return folders;
     }
 
     public void pinFolder(Path folder) {
@@ -130,6 +1035,7 @@ public class FileManagerController {
                 pinnedFolders.add(folder);
                 ui.getPinnedFoldersListView().getItems().add(folder);
                 ui.getPinnedFoldersListView().refresh();
+                fileIndex.watch(folder);
                 savePinnedFolders();
                 System.out.println("Pinned folder: " + folder);
 
@@ -150,6 +1056,7 @@ public class FileManagerController {
             if (pinnedFolders.remove(folder)) {
                 ui.getPinnedFoldersListView().getItems().remove(folder);
                 ui.getPinnedFoldersListView().refresh();
+                fileIndex.unwatch(folder);
                 savePinnedFolders();
                 System.out.println("Unpinned folder: " + folder);
             } else {
@@ -190,36 +1097,43 @@ public class FileManagerController {
         return currentPath;
     }
 
-    public List<Path> getNavigationHistory() {
-        return navigationHistory;
+    // Every mounted drive, so each one's own trash folder is found
+    public List<Path> getDriveRoots() {
+        return driveProber.getRoots();
     }
 
-    public int getHistoryIndex() {
-        return historyIndex;
-    }
-
-    public void setHistoryIndex(int historyIndex) {
-        this.historyIndex = historyIndex;
+    // The index walks across mount points, so drives mounted below another one are covered already
+    private static List<Path> outermost(List<Path> roots) {
+        List<Path> result = new ArrayList<>();
+        for (Path root : roots) {
+            if (roots.stream().noneMatch(other -> !other.equals(root) && root.startsWith(other))) {
+                result.add(root);
+            }
+        }
+        return result;
     }
 
-    public Path getCopiedPath() {
-        return copiedPathProperty.get();
+    public ObservableSet<Path> getClipboard() {
+        return clipboard;
     }
 
-    public void setCopiedPath(Path copiedPath) {
-        this.copiedPathProperty.set(copiedPath);
+    public boolean isClipboardCut() {
+        return clipboardCut;
     }
 
-    public SimpleObjectProperty<Path> copiedPathProperty() {
-        return copiedPathProperty;
+    public void setClipboard(Collection<Path> paths, boolean cut) {
+        clipboard.clear();
+        clipboard.addAll(paths);
+        clipboardCut = cut;
     }
 
-    public Path getCutPath() {
-        return cutPath;
+    public void clearClipboard() {
+        clipboard.clear();
+        clipboardCut = false;
     }
 
-    public void setCutPath(Path cutPath) {
-        this.cutPath = cutPath;
+    public boolean isCut(Path path) {
+        return clipboardCut && clipboard.contains(path);
     }
 
     public Image getMaximizeImage() {
@@ -5,6 +5,7 @@ import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
@@ -13,14 +14,16 @@ import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import java.nio.file.Path;
-import java.util.Objects;
 
 public class FileManagerUI {
 
-    private final ListView<Path> fileListView;
+    private final ListView<FileEntry> fileListView;
+    private final DetailView detailView;
+    private final ToggleButton detailModeButton;
     private final ListView<DriveInfo> driveListView;
     private final ListView<Path> pinnedFoldersListView; // New ListView for pinned folders
     private final Button homeButton;
+    private final Button emptyTrashButton;
     private final Button backButton;
     private final Button forwardButton;
     private final Button minimizeButton;
@@ -30,12 +33,25 @@ public class FileManagerUI {
     private final VBox header;
     private final TextField pathField;
     private final TextField searchField;
+    private final ChoiceBox<SearchScope> searchScopeBox;
+    private final ChoiceBox<SortField> sortFieldBox;
+    private final ToggleButton sortDescendingButton;
     private final VBox mainContent;
+    private final TransferPanel transferPanel;
+    private final HBox statusBar;
+    private final Label statusLabel;
+    private final ProgressBar statusProgress;
 
     public FileManagerUI() {
         // Initialize UI components
         fileListView = new ListView<>();
         fileListView.getStyleClass().add("file-list-view");
+        fileListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        // The same entries as a table; it always shows whatever the list shows
+        detailView = new DetailView();
+        detailView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        detailView.itemsProperty().bind(fileListView.itemsProperty());
 
         driveListView = new ListView<>();
         driveListView.getStyleClass().add("drive-list-view");
@@ -44,10 +60,7 @@ public class FileManagerUI {
         pinnedFoldersListView.getStyleClass().add("pinned-folders-list-view");
 
         // Load header logo
-        Image headerLogoImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/logo_64.png")));
-        if (headerLogoImage.isError()) {
-            System.err.println("Failed to load header_logo.png");
-        }
+        Image headerLogoImage = IconRegistry.get("logo_64.png", 24);
         ImageView headerLogoView = new ImageView(headerLogoImage);
         headerLogoView.getStyleClass().add("logo");
         headerLogoView.setFitHeight(24);
@@ -55,10 +68,7 @@ public class FileManagerUI {
 
         // Navigation buttons
         homeButton = new Button();
-        Image homeButtonLogoImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/home_64.png")));
-        if (homeButtonLogoImage.isError()) {
-            System.err.println("Failed to load home_button_logo.png");
-        }
+        Image homeButtonLogoImage = IconRegistry.get("home_64.png", 16);
         ImageView homeButtonLogo = new ImageView(homeButtonLogoImage);
         homeButtonLogo.getStyleClass().add("nav-button-logo");
         homeButtonLogo.setFitHeight(16);
@@ -68,10 +78,7 @@ public class FileManagerUI {
         homeButton.getStyleClass().add("house-button");
 
         backButton = new Button();
-        Image backButtonLogoImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/back.png")));
-        if (backButtonLogoImage.isError()) {
-            System.err.println("Failed to load back_button_logo.png");
-        }
+        Image backButtonLogoImage = IconRegistry.get("back.png", 16);
         ImageView backButtonLogo = new ImageView(backButtonLogoImage);
         backButtonLogo.getStyleClass().add("nav-button-logo");
         backButtonLogo.setFitHeight(16);
@@ -81,10 +88,7 @@ public class FileManagerUI {
         backButton.getStyleClass().add("back-button");
 
         forwardButton = new Button();
-        Image forwardButtonLogoImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/forward_64.png")));
-        if (forwardButtonLogoImage.isError()) {
-            System.err.println("Failed to load forward_button_logo.png");
-        }
+        Image forwardButtonLogoImage = IconRegistry.get("forward_64.png", 16);
         ImageView forwardButtonLogo = new ImageView(forwardButtonLogoImage);
         forwardButtonLogo.getStyleClass().add("nav-button-logo");
         forwardButtonLogo.setFitHeight(16);
@@ -102,18 +106,45 @@ public class FileManagerUI {
         searchField.getStyleClass().add("search-field");
         searchField.setPromptText("Search...");
 
+        searchScopeBox = new ChoiceBox<>();
+        searchScopeBox.getStyleClass().add("search-scope");
+        searchScopeBox.getItems().addAll(SearchScope.values());
+        searchScopeBox.setValue(SearchScope.FOLDER);
+
+        sortFieldBox = new ChoiceBox<>();
+        sortFieldBox.getStyleClass().add("sort-field");
+        sortFieldBox.getItems().addAll(SortField.values());
+        sortFieldBox.setValue(SortField.NAME);
+
+        sortDescendingButton = new ToggleButton("\u2191");
+        sortDescendingButton.getStyleClass().add("sort-direction");
+        sortDescendingButton.textProperty().bind(Bindings.when(sortDescendingButton.selectedProperty())
+                .then("\u2193").otherwise("\u2191"));
+        sortDescendingButton.setTooltip(new Tooltip("Reverse the order"));
+
+        detailModeButton = new ToggleButton("Details");
+        detailModeButton.getStyleClass().add("sort-direction");
+        detailModeButton.setTooltip(new Tooltip("Show files as a table with more columns"));
+
         Label drivesLabel = new Label("Drives");
         drivesLabel.getStyleClass().add("drives-label");
 
+        emptyTrashButton = new Button("Empty Trash");
+        Image emptyTrashImage = IconRegistry.get("delete_64.png", 16);
+        ImageView emptyTrashIcon = new ImageView(emptyTrashImage);
+        emptyTrashIcon.setFitHeight(16);
+        emptyTrashIcon.setPreserveRatio(true);
+        emptyTrashButton.setGraphic(emptyTrashIcon);
+        emptyTrashButton.getStyleClass().add("empty-trash-button");
+        emptyTrashButton.setVisible(Trash.canEmpty());
+        emptyTrashButton.setManaged(Trash.canEmpty());
+
         Label pinnedFoldersLabel = new Label("Pinned Folders"); // Label for pinned folders
         pinnedFoldersLabel.getStyleClass().add("pinned-folders-label");
 
         // Window control buttons with custom icons
         minimizeButton = new Button();
-        Image minimizeImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/minus_64.png")));
-        if (minimizeImage.isError()) {
-            System.err.println("Failed to load minimize_16.png");
-        }
+        Image minimizeImage = IconRegistry.get("minus_64.png", 16);
         ImageView minimizeIcon = new ImageView(minimizeImage);
         minimizeIcon.setFitHeight(16);
         minimizeIcon.setPreserveRatio(true);
@@ -121,10 +152,7 @@ public class FileManagerUI {
         minimizeButton.getStyleClass().addAll("window-button", "minimize-button");
 
         maximizeButton = new Button();
-        Image maximizeImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/maximize_64.png")));
-        if (maximizeImage.isError()) {
-            System.err.println("Failed to load maximize_16.png");
-        }
+        Image maximizeImage = IconRegistry.get("maximize_64.png", 16);
         ImageView maximizeIcon = new ImageView(maximizeImage);
         maximizeIcon.setFitHeight(16);
         maximizeIcon.setPreserveRatio(true);
@@ -132,10 +160,7 @@ public class FileManagerUI {
         maximizeButton.getStyleClass().addAll("window-button", "maximize-button");
 
         closeButton = new Button();
-        Image closeImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/close_64.png")));
-        if (closeImage.isError()) {
-            System.err.println("Failed to load close_16.png");
-        }
+        Image closeImage = IconRegistry.get("close_64.png", 16);
         ImageView closeIcon = new ImageView(closeImage);
         closeIcon.setFitHeight(16);
         closeIcon.setPreserveRatio(true);
@@ -165,7 +190,7 @@ public class FileManagerUI {
             }
         });
 
-        VBox sidebar = new VBox(10, headerLogoView, searchField,pinnedFoldersLabel,pinnedFoldersListView , drivesLabel, driveListView);
+        VBox sidebar = new VBox(10, headerLogoView, searchField, searchScopeBox, pinnedFoldersLabel,pinnedFoldersListView , drivesLabel, driveListView, emptyTrashButton);
         sidebar.getStyleClass().add("sidebar");
         sidebar.setMinWidth(200);
         sidebar.setPrefWidth(200);
@@ -185,7 +210,7 @@ public class FileManagerUI {
         navGroup.setAlignment(Pos.CENTER);
 
         // Second row with home button, navigation group, and path field
-        HBox bottomRow = new HBox(10, homeButton, navGroup, pathField, new Region());
+        HBox bottomRow = new HBox(10, homeButton, navGroup, pathField, sortFieldBox, sortDescendingButton, detailModeButton, new Region());
         bottomRow.getStyleClass().add("header-row");
         bottomRow.setAlignment(Pos.CENTER);
         bottomRow.setMinHeight(30);
@@ -197,10 +222,26 @@ public class FileManagerUI {
         header = new VBox(topRow, bottomRow);
         header.getStyleClass().add("header");
 
+        // Status bar for background work (listing progress, item counts)
+        statusLabel = new Label();
+        statusLabel.getStyleClass().add("status-label");
+        statusProgress = new ProgressBar();
+        statusProgress.getStyleClass().add("status-progress");
+        statusProgress.setMaxWidth(160);
+        statusProgress.setVisible(false);
+        statusBar = new HBox(10, statusLabel, new Region(), statusProgress);
+        statusBar.getStyleClass().add("status-bar");
+        statusBar.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(statusBar.getChildren().get(1), Priority.ALWAYS);
+
+        // Running copy/move/delete jobs, shown above the status bar
+        transferPanel = new TransferPanel();
+
         // Main content layout
-        mainContent = new VBox(header, fileListView);
+        mainContent = new VBox(header, fileListView, transferPanel, statusBar);
         mainContent.getStyleClass().add("main-content");
         VBox.setVgrow(fileListView, Priority.ALWAYS);
+        VBox.setVgrow(detailView, Priority.ALWAYS);
 
         // Split pane for sidebar and main content
         SplitPane splitPane = new SplitPane();
@@ -220,10 +261,55 @@ public class FileManagerUI {
         return header;
     }
 
-    public ListView<Path> getFileListView() {
+    public ListView<FileEntry> getFileListView() {
         return fileListView;
     }
 
+    public DetailView getDetailView() {
+        return detailView;
+    }
+
+    public ToggleButton getDetailModeButton() {
+        return detailModeButton;
+    }
+
+    public boolean isDetailMode() {
+        return detailModeButton.isSelected();
+    }
+
+    // Whichever of the list and the table is in use
+    public Control getFileView() {
+        return isDetailMode() ? detailView : fileListView;
+    }
+
+    public MultipleSelectionModel<FileEntry> getFileSelection() {
+        return isDetailMode() ? detailView.getSelectionModel() : fileListView.getSelectionModel();
+    }
+
+    // Index of the topmost row on screen, or -1 before the view has been laid out
+    public int getFirstVisibleIndex() {
+        if (getFileView().lookup(".virtual-flow") instanceof VirtualFlow<?> flow && flow.getFirstVisibleCell() != null) {
+            return flow.getFirstVisibleCell().getIndex();
+        }
+        return -1;
+    }
+
+    public void scrollFileViewTo(int index) {
+        if (isDetailMode()) {
+            detailView.scrollTo(index);
+        } else {
+            fileListView.scrollTo(index);
+        }
+    }
+
+    public void refreshFileView() {
+        if (isDetailMode()) {
+            detailView.refresh();
+        } else {
+            fileListView.refresh();
+        }
+    }
+
     public ListView<DriveInfo> getDriveListView() {
         return driveListView;
     }
@@ -232,6 +318,10 @@ public class FileManagerUI {
         return pinnedFoldersListView;
     }
 
+    public Button getEmptyTrashButton() {
+        return emptyTrashButton;
+    }
+
     public Button getHomeButton() {
         return homeButton;
     }
@@ -268,7 +358,35 @@ public class FileManagerUI {
         return searchField;
     }
 
+    public ChoiceBox<SearchScope> getSearchScopeBox() {
+        return searchScopeBox;
+    }
+
+    public ChoiceBox<SortField> getSortFieldBox() {
+        return sortFieldBox;
+    }
+
+    public ToggleButton getSortDescendingButton() {
+        return sortDescendingButton;
+    }
+
     public VBox getMainContent() {
         return mainContent;
     }
+
+    public TransferPanel getTransferPanel() {
+        return transferPanel;
+    }
+
+    public HBox getStatusBar() {
+        return statusBar;
+    }
+
+    public Label getStatusLabel() {
+        return statusLabel;
+    }
+
+    public ProgressBar getStatusProgress() {
+        return statusProgress;
+    }
 }
\ No newline at end of file
@@ -8,19 +8,19 @@ import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FileOperations {
 
     private final FileManagerUI ui;
     private final FileSystemUtils fileSystemUtils;
     private final FileManagerController controller;
-    private boolean isCutOperation;
 
     public FileOperations(FileManagerUI ui, FileSystemUtils fileSystemUtils, FileManagerController controller) {
         this.ui = ui;
         this.fileSystemUtils = fileSystemUtils;
         this.controller = controller;
-        this.isCutOperation = false;
     }
 
     public void openItem(Path path) throws IOException {
@@ -47,102 +47,146 @@ public class FileOperations {
         }
     }
 
-    public void handleRename(Path selectedPath, int selectedIndex) {
-        if (selectedPath == null || selectedIndex < 0) {
+    public void handleRename(FileEntry selectedEntry, int selectedIndex) {
+        if (selectedEntry == null || selectedIndex < 0) {
             System.out.println("Rename aborted: Invalid path or index");
             controller.showErrorDialog("Error", "No file or folder selected.");
             return;
         }
-        ui.getFileListView().scrollTo(selectedIndex);
+        startEdit(selectedIndex, "Cannot edit: Item is not visible.");
+    }
+
+    // Puts the name at index into edit mode, in whichever view is showing
+    private void startEdit(int index, String notVisibleMessage) {
+        ui.scrollFileViewTo(index);
+        if (ui.isDetailMode()) {
+            DetailView detailView = ui.getDetailView();
+            Platform.runLater(() -> {
+                System.out.println("Starting edit for row at index: " + index);
+                detailView.edit(index, detailView.getNameColumn());
+            });
+            return;
+        }
         Platform.runLater(() -> {
-            ListCell<Path> cell = getCellAtIndex(ui.getFileListView(), selectedIndex);
+            ListCell<FileEntry> cell = getCellAtIndex(ui.getFileListView(), index);
             if (cell != null) {
-                System.out.println("Starting edit for cell at index: " + selectedIndex);
+                System.out.println("Starting edit for cell at index: " + index);
                 cell.startEdit();
             } else {
-                System.out.println("Failed to find cell at index: " + selectedIndex);
-                controller.showErrorDialog("Error", "Cannot edit: Item is not visible.");
+                System.out.println("Failed to find cell at index: " + index);
+                controller.showErrorDialog("Error", notVisibleMessage);
             }
         });
     }
 
-    private ListCell<Path> getCellAtIndex(ListView<Path> listView, int index) {
+    private ListCell<FileEntry> getCellAtIndex(ListView<FileEntry> listView, int index) {
         for (Node node : listView.lookupAll(".list-cell")) {
             if (node instanceof ListCell) {
                 ListCell<?> cell = (ListCell<?>) node;
                 if (cell.getIndex() == index && !cell.isEmpty()) {
-                    return (ListCell<Path>) cell;
+                    return (ListCell<FileEntry>) cell;
                 }
             }
         }
         return null;
     }
 
+    // The selected items, in selection order
+    private List<Path> selectedPaths() {
+        List<Path> paths = new ArrayList<>();
+        for (FileEntry entry : ui.getFileSelection().getSelectedItems()) {
+            if (entry != null) {
+                paths.add(entry.path());
+            }
+        }
+        return paths;
+    }
+
+    // Moves the selection to the trash, or deletes it where there is no trash
     public void handleDelete() {
-        Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-        if (selectedPath == null) {
+        if (!Trash.isSupported()) {
+            handleDeletePermanently();
+            return;
+        }
+        List<Path> selectedPaths = selectedPaths();
+        if (selectedPaths.isEmpty()) {
             System.out.println("Delete failed: No item selected");
             controller.showErrorDialog("Error", "No file or folder selected.");
             return;
         }
-        try {
-            System.out.println("Deleting: " + selectedPath);
-            if (Files.isDirectory(selectedPath)) {
-                Files.walk(selectedPath)
-                        .sorted((p1, p2) -> -p1.compareTo(p2))
-                        .forEach(p -> {
-                            try {
-                                Files.delete(p);
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        });
-            } else {
-                Files.delete(selectedPath);
-            }
-            if (selectedPath.equals(controller.getCutPath())) {
-                controller.setCutPath(null);
-            }
-            if (controller.isFolderPinned(selectedPath)) {
-                controller.unpinFolder(selectedPath);
-            }
-            controller.loadDirectory(controller.getCurrentPath());
-        } catch (IOException e) {
-            System.err.println("Error deleting: " + e.getMessage());
-            controller.showErrorDialog("Error", "Error deleting file or folder: " + e.getMessage());
+        System.out.println("Moving to trash: " + selectedPaths);
+        controller.submitJob(new TrashJob(selectedPaths));
+    }
+
+    public void handleDeletePermanently() {
+        List<Path> selectedPaths = selectedPaths();
+        if (selectedPaths.isEmpty()) {
+            System.out.println("Delete failed: No item selected");
+            controller.showErrorDialog("Error", "No file or folder selected.");
+            return;
+        }
+        System.out.println("Deleting: " + selectedPaths);
+        controller.submitJob(new DeleteJob(selectedPaths));
+    }
+
+    // Lists the trash off the FX thread, since it spans every drive, then asks before deleting.
+    // Only what was counted and confirmed is deleted.
+    public void handleEmptyTrash() {
+        List<Path> roots = controller.getDriveRoots();
+        Thread counter = new Thread(() -> {
+            List<Path> contents = Trash.trashContents(roots);
+            long items = contents.stream()
+                    .filter(path -> path.getParent().getFileName().toString().equals("files"))
+                    .count();
+            Platform.runLater(() -> confirmEmptyTrash(roots, contents, items));
+        }, "trash-count");
+        counter.setDaemon(true);
+        counter.start();
+    }
+
+    private void confirmEmptyTrash(List<Path> roots, List<Path> contents, long items) {
+        if (items == 0) {
+            System.out.println("Trash is already empty");
+            return;
         }
+        String message = "Permanently delete " + (items == 1 ? "1 item" : items + " items")
+                + " in the trash on all drives? This cannot be undone.";
+        if (!controller.showConfirmDialog("Empty Trash", message, "Empty Trash")) {
+            return;
+        }
+        System.out.println("Emptying trash: " + items + " items");
+        controller.submitJob(DeleteJob.inBackground("Emptying trash", roots, () -> contents));
     }
 
     public void handleCopy() {
-        Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-        if (selectedPath == null) {
+        List<Path> selectedPaths = selectedPaths();
+        if (selectedPaths.isEmpty()) {
             System.out.println("Copy failed: No item selected");
             controller.showErrorDialog("Error", "No file or folder selected.");
             return;
         }
-        controller.setCopiedPath(selectedPath);
-        controller.setCutPath(null);
-        isCutOperation = false;
-        System.out.println("Copied path: " + selectedPath);
+        boolean wasCut = controller.isClipboardCut();
+        controller.setClipboard(selectedPaths, false);
+        System.out.println("Copied paths: " + selectedPaths);
+        if (wasCut) {
+            ui.refreshFileView();
+        }
     }
 
     public void handleCut() {
-        Path selectedPath = ui.getFileListView().getSelectionModel().getSelectedItem();
-        if (selectedPath == null) {
+        List<Path> selectedPaths = selectedPaths();
+        if (selectedPaths.isEmpty()) {
             System.out.println("Cut failed: No item selected");
             controller.showErrorDialog("Error", "No file or folder selected.");
             return;
         }
-        controller.setCopiedPath(selectedPath);
-        controller.setCutPath(selectedPath);
-        isCutOperation = true;
-        System.out.println("Cut path: " + selectedPath);
-        ui.getFileListView().refresh();
+        controller.setClipboard(selectedPaths, true);
+        System.out.println("Cut paths: " + selectedPaths);
+        ui.refreshFileView();
     }
 
     public void handlePaste() {
-        Path copiedPath = controller.getCopiedPath();
-        if (copiedPath == null) {
+        if (controller.getClipboard().isEmpty()) {
             System.out.println("Paste failed: No item copied or cut");
             controller.showErrorDialog("Error", "No file or folder copied or cut.");
             return;
@@ -152,27 +196,16 @@ public class FileOperations {
             controller.showErrorDialog("Error", "No destination directory selected.");
             return;
         }
-        try {
-            System.out.println((isCutOperation ? "Moving: " : "Copying: ") + copiedPath + " to " + controller.getCurrentPath());
-            Path targetPath = controller.getCurrentPath().resolve(copiedPath.getFileName());
-            if (Files.isDirectory(copiedPath)) {
-                copyDirectory(copiedPath, targetPath);
-            } else {
-                if (isCutOperation) {
-                    Files.move(copiedPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                } else {
-                    Files.copy(copiedPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                }
-            }
-            if (isCutOperation) {
-                controller.setCopiedPath(null);
-                controller.setCutPath(null);
-                isCutOperation = false;
-            }
-            controller.loadDirectory(controller.getCurrentPath());
-        } catch (IOException e) {
-            System.err.println("Error pasting: " + e.getMessage());
-            controller.showErrorDialog("Error", "Error pasting file or folder: " + e.getMessage());
+        Path targetDirectory = controller.getCurrentPath();
+        List<Path> sources = List.copyOf(controller.getClipboard());
+        // One job for the whole clipboard; the listing is updated once when it finishes
+        if (controller.isClipboardCut()) {
+            System.out.println("Moving: " + sources + " to " + targetDirectory);
+            controller.clearClipboard();
+            controller.submitJob(new MoveJob(sources, targetDirectory));
+        } else {
+            System.out.println("Copying: " + sources + " to " + targetDirectory);
+            controller.submitJob(new CopyJob(sources, targetDirectory));
         }
     }
 
@@ -192,29 +225,31 @@ public class FileOperations {
             }
             Files.createDirectory(newFolderPath);
             System.out.println("Created new folder: " + newFolderPath);
-            controller.loadDirectory(controller.getCurrentPath());
-            // Select and rename the new folder
-            int newFolderIndex = ui.getFileListView().getItems().indexOf(newFolderPath);
-            if (newFolderIndex >= 0) {
-                ui.getFileListView().getSelectionModel().select(newFolderIndex);
-                ui.getFileListView().scrollTo(newFolderIndex);
-                Platform.runLater(() -> {
-                    ListCell<Path> cell = getCellAtIndex(ui.getFileListView(), newFolderIndex);
-                    if (cell != null) {
-                        System.out.println("Starting rename for new folder at index: " + newFolderIndex);
-                        cell.startEdit();
-                    } else {
-                        System.out.println("Failed to find cell for new folder at index: " + newFolderIndex);
-                        controller.showErrorDialog("Error", "Cannot rename: New folder is not visible.");
-                    }
-                });
-            }
+            controller.applyChange(ListingChange.added(newFolderPath));
+            // Select and rename the new folder, once it is in the listing
+            Path created = newFolderPath;
+            controller.whenListed(() -> {
+                int newFolderIndex = indexOf(created);
+                if (newFolderIndex >= 0) {
+                    ui.getFileSelection().clearAndSelect(newFolderIndex);
+                    startEdit(newFolderIndex, "Cannot rename: New folder is not visible.");
+                }
+            });
         } catch (IOException e) {
             System.err.println("Error creating new folder: " + e.getMessage());
             controller.showErrorDialog("Error", "Error creating new folder: " + e.getMessage());
         }
     }
 
+    private int indexOf(Path path) {
+        for (int i = 0; i < ui.getFileListView().getItems().size(); i++) {
+            if (ui.getFileListView().getItems().get(i).path().equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public void handlePinFolder(Path folder) {
         if (Files.isDirectory(folder)) {
             controller.pinFolder(folder);
@@ -226,19 +261,4 @@ public class FileOperations {
     public void handleUnpinFolder(Path folder) {
         controller.unpinFolder(folder);
     }
-
-    private void copyDirectory(Path source, Path target) throws IOException {
-        Files.walk(source).forEach(s -> {
-            try {
-                Path t = target.resolve(source.relativize(s));
-                if (Files.isDirectory(s)) {
-                    Files.createDirectories(t);
-                } else {
-                    Files.copy(s, t, StandardCopyOption.REPLACE_EXISTING);
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-    }
 }
\ No newline at end of file
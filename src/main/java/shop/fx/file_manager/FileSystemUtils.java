@@ -1,8 +1,13 @@
 package shop.fx.file_manager;
 
+import javafx.beans.binding.Bindings;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.event.Event;
 import javafx.geometry.HPos;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.control.ListView;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -10,177 +15,177 @@ import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
-import javax.swing.filechooser.FileSystemView;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.*;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class FileSystemUtils {
 
-    public void loadDrives(ListView<DriveInfo> driveListView) {
-        FileSystem fileSystem = FileSystems.getDefault();
-        for (Path root : fileSystem.getRootDirectories()) {
-            try {
-                if (Files.exists(root) && Files.isReadable(root)) {
-                    String displayName = getDriveName(root);
-                    if (displayName != null && !displayName.trim().isEmpty()) {
-                        System.out.println("Loaded drive: " + displayName);
-                        driveListView.getItems().add(new DriveInfo(root, displayName));
-                    } else {
-                        System.err.println("Skipping drive with empty name: " + root);
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("Cannot access drive: " + root + ", error: " + e.getMessage());
-            }
-        }
-    }
+    // The drive grid's listener; only the grid on screen has one, so it is replaced on each visit
+    private ObservableList<DriveInfo> gridDrives;
+    private ListChangeListener<DriveInfo> gridListener;
 
-    public void loadDrivesInGrid(VBox mainContent) {
+    // Builds the home screen from the drives known so far; cells fill in as their probes complete
+    public void loadDrivesInGrid(VBox mainContent, ObservableList<DriveInfo> drives, Consumer<DriveInfo> onAnalyze) {
         GridPane driveGrid = new GridPane();
         driveGrid.getStyleClass().add("drive-grid");
         driveGrid.setHgap(10);
         driveGrid.setVgap(10);
         driveGrid.setPadding(new javafx.geometry.Insets(10));
+        Map<DriveInfo, Node> cells = new HashMap<>();
+        for (DriveInfo drive : drives) {
+            cells.put(drive, createDriveCell(drive, onAnalyze));
+        }
+        placeDriveCells(driveGrid, drives, cells);
 
-        FileSystem fileSystem = FileSystems.getDefault();
-        List<DriveInfo> drives = new ArrayList<>();
-        for (Path root : fileSystem.getRootDirectories()) {
-            try {
-                if (Files.exists(root) && Files.isReadable(root)) {
-                    String displayName = getDriveName(root);
-                    if (displayName != null && !displayName.trim().isEmpty()) {
-                        System.out.println("Loaded drive for grid: " + displayName);
-                        drives.add(new DriveInfo(root, displayName));
-                    } else {
-                        System.err.println("Skipping drive with empty name for grid: " + root);
+        // Add and remove only the cells of drives that come or go, for as long as the grid is on screen
+        if (gridListener != null) {
+            gridDrives.removeListener(gridListener);
+        }
+        gridDrives = drives;
+        gridListener = new ListChangeListener<>() {
+            @Override
+            public void onChanged(Change<? extends DriveInfo> change) {
+                if (mainContent.getChildren().size() <= 1 || mainContent.getChildren().get(1) != driveGrid) {
+                    drives.removeListener(this);
+                    if (gridListener == this) {
+                        gridListener = null;
+                        gridDrives = null;
                     }
+                    return;
                 }
-            } catch (Exception e) {
-                System.err.println("Cannot access drive for grid: " + root + ", error: " + e.getMessage());
-            }
-        }
-
-        int colCount = 2; // Two columns
-        for (int i = 0; i < drives.size(); i++) {
-            DriveInfo drive = drives.get(i);
-            GridPane cellContent = new GridPane();
-            cellContent.getStyleClass().add("drive-cell-content");
-            cellContent.setUserData(drive);
-
-            // Drive icon
-            ImageView driveIcon = new ImageView();
-            driveIcon.getStyleClass().add("drive-icon");
-            driveIcon.setFitHeight(16);
-            driveIcon.setPreserveRatio(true);
-            Image driveImage = new Image(Objects.requireNonNull(getClass().getResourceAsStream("icons/hdd_64.png")));
-            if (driveImage.isError()) {
-                System.err.println("Failed to load hdd_64.png");
-            }
-            driveIcon.setImage(driveImage);
-
-            // Vertical arrangement of drive name, sizes, and progress bar
-            VBox textAndProgress = new VBox(8);
-            Label driveName = new Label(drive.getDisplayName());
-            driveName.getStyleClass().add("drive-name");
-
-            // Total and free space labels
-            Label totalSizeLabel = new Label();
-            totalSizeLabel.getStyleClass().add("drive-total-size");
-
-            ProgressBar progressBar = new ProgressBar();
-            progressBar.getStyleClass().add("drive-progress");
-            progressBar.setMaxWidth(160);
-
-            try {
-                FileStore store = Files.getFileStore(drive.getPath());
-                long totalSpace = store.getTotalSpace();
-                long freeSpace = store.getUsableSpace();
-                long usedSpace = totalSpace - freeSpace;
-                double progress = totalSpace > 0 ? (double) usedSpace / totalSpace : 0;
-                progressBar.setProgress(progress);
-                totalSizeLabel.setText("Total: " + formatSize(totalSpace)+" | Free: "+formatSize(freeSpace));
-            } catch (IOException e) {
-                System.err.println("Error calculating progress or sizes for drive: " + drive.getDisplayName());
-                progressBar.setProgress(0);
-                totalSizeLabel.setText("Total: (Error)");
+                while (change.next()) {
+                    for (DriveInfo drive : change.getRemoved()) {
+                        if (!drives.contains(drive)) {
+                            driveGrid.getChildren().remove(cells.remove(drive));
+                        }
+                    }
+                    for (DriveInfo drive : change.getAddedSubList()) {
+                        cells.computeIfAbsent(drive, added -> createDriveCell(added, onAnalyze));
+                    }
+                }
+                placeDriveCells(driveGrid, drives, cells);
             }
-
-            textAndProgress.getChildren().addAll(driveName,progressBar, totalSizeLabel);
-
-            // Define column constraints
-            ColumnConstraints iconCol = new ColumnConstraints(24);
-            iconCol.setHalignment(HPos.LEFT);
-            ColumnConstraints textCol = new ColumnConstraints();
-            textCol.setHgrow(Priority.ALWAYS);
-            textCol.setHalignment(HPos.LEFT);
-            cellContent.getColumnConstraints().addAll(iconCol, textCol);
-            cellContent.setHgap(8);
-            cellContent.add(driveIcon, 0, 0);
-            cellContent.add(textAndProgress, 1, 0);
-
-            VBox cell = new VBox(cellContent);
-            cell.getStyleClass().add("drive-cell");
-            driveGrid.add(cell, i % colCount, i / colCount);
-        }
+        };
+        drives.addListener(gridListener);
 
         // Replace the second child (fileListView) with the driveGrid
         mainContent.getChildren().set(1, driveGrid);
         VBox.setVgrow(driveGrid, Priority.ALWAYS);
     }
 
-    public void loadDirectory(Path directory, ListView<Path> fileListView) throws IOException {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
-            for (Path path : stream) {
-                fileListView.getItems().add(path);
+    // Moves every cell to its drive's slot; cells that are already in place stay untouched
+    private static void placeDriveCells(GridPane driveGrid, List<DriveInfo> drives, Map<DriveInfo, Node> cells) {
+        int colCount = 2; // Two columns
+        for (int i = 0; i < drives.size(); i++) {
+            Node cell = cells.get(drives.get(i));
+            GridPane.setConstraints(cell, i % colCount, i / colCount);
+            if (cell.getParent() != driveGrid) {
+                driveGrid.getChildren().add(cell);
             }
-        } catch (AccessDeniedException e) {
-            System.err.println("Access denied to: " + directory);
-            throw e;
         }
     }
 
-    public void searchDirectory(Path directory, String query, ListView<Path> fileListView) throws IOException {
-        fileListView.getItems().clear();
-        if (query.isEmpty()) {
-            loadDirectory(directory, fileListView);
-            return;
-        }
+    private Node createDriveCell(DriveInfo drive, Consumer<DriveInfo> onAnalyze) {
+        GridPane cellContent = new GridPane();
+        cellContent.getStyleClass().add("drive-cell-content");
+        cellContent.setUserData(drive);
+
+        // Drive icon
+        ImageView driveIcon = new ImageView();
+        driveIcon.getStyleClass().add("drive-icon");
+        driveIcon.setFitHeight(16);
+        driveIcon.setPreserveRatio(true);
+        Image driveImage = IconRegistry.get("hdd_64.png", 16);
+        driveIcon.setImage(driveImage);
+
+        // Vertical arrangement of drive name, sizes, and progress bar
+        VBox textAndProgress = new VBox(8);
+        Label driveName = new Label();
+        driveName.getStyleClass().add("drive-name");
+        driveName.textProperty().bind(drive.displayNameProperty());
+
+        // Total and free space labels
+        Label totalSizeLabel = new Label();
+        totalSizeLabel.getStyleClass().add("drive-total-size");
+
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.getStyleClass().add("drive-progress");
+        progressBar.setMaxWidth(160);
+        bindCapacity(drive, progressBar, totalSizeLabel);
+
+        Button analyzeButton = new Button("Analyze");
+        analyzeButton.getStyleClass().add("transfer-button");
+        analyzeButton.setOnAction(_ -> onAnalyze.accept(drive));
+        // Keep the click from also opening the drive
+        analyzeButton.setOnMouseClicked(Event::consume);
+
+        textAndProgress.getChildren().addAll(driveName,progressBar, totalSizeLabel, analyzeButton);
+
+        // Define column constraints
+        ColumnConstraints iconCol = new ColumnConstraints(24);
+        iconCol.setHalignment(HPos.LEFT);
+        ColumnConstraints textCol = new ColumnConstraints();
+        textCol.setHgrow(Priority.ALWAYS);
+        textCol.setHalignment(HPos.LEFT);
+        cellContent.getColumnConstraints().addAll(iconCol, textCol);
+        cellContent.setHgap(8);
+        cellContent.add(driveIcon, 0, 0);
+        cellContent.add(textAndProgress, 1, 0);
+
+        VBox cell = new VBox(cellContent);
+        cell.getStyleClass().add("drive-cell");
+        return cell;
+    }
 
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, path ->
-                path.getFileName().toString().toLowerCase().contains(query.toLowerCase()))) {
-            for (Path path : stream) {
-                fileListView.getItems().add(path);
+    // Shows the used share and capacity once known, an indeterminate bar while probing
+    public void bindCapacity(DriveInfo drive, ProgressBar progressBar, Label sizeLabel) {
+        progressBar.progressProperty().bind(Bindings.createDoubleBinding(() -> {
+            long total = drive.totalSpaceProperty().get();
+            if (total > 0) {
+                return (double) (total - drive.freeSpaceProperty().get()) / total;
             }
-        } catch (AccessDeniedException e) {
-            System.err.println("Access denied to: " + directory);
-            throw e;
+            return drive.getStatus() == DriveInfo.Status.PROBING ? ProgressBar.INDETERMINATE_PROGRESS : 0;
+        }, drive.totalSpaceProperty(), drive.freeSpaceProperty(), drive.statusProperty()));
+        if (sizeLabel != null) {
+            sizeLabel.textProperty().bind(Bindings.createStringBinding(() -> {
+                long total = drive.totalSpaceProperty().get();
+                if (total >= 0) {
+                    String text = "Total: " + formatSize(total) + " | Free: " + formatSize(drive.freeSpaceProperty().get());
+                    return drive.getStatus() == DriveInfo.Status.NOT_RESPONDING ? text + " (not responding)" : text;
+                }
+                return switch (drive.getStatus()) {
+                    case PROBING -> "Checking...";
+                    case NOT_RESPONDING -> "Not responding";
+                    case READY, UNAVAILABLE -> "Total: (Error)";
+                };
+            }, drive.totalSpaceProperty(), drive.freeSpaceProperty(), drive.statusProperty()));
         }
     }
 
     public String formatSize(long bytes) {
+        return formatBytes(bytes);
+    }
+
+    public static String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + " B";
         int exp = (int) (Math.log(bytes) / Math.log(1024));
         String pre = "KMGTPE".charAt(exp - 1) + "";
         return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
     }
 
-    private String getDriveName(Path root) {
-        try {
-            FileSystemView fsv = FileSystemView.getFileSystemView();
-            File drive = root.toFile();
-            String name = fsv.getSystemDisplayName(drive);
-            if (name == null || name.trim().isEmpty()) {
-                name = root.toString();
-            }
-            String formattedName = name;
-            return formattedName;
-        } catch (Exception e) {
-            System.err.println("Error getting name for drive: " + root + ", error: " + e.getMessage());
-            return "Drive (" + root.toString() + ")";
-        }
+    // The user's cache root: $XDG_CACHE_HOME, or ~/.cache when it isn't set
+    public static Path cacheHome() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        return cacheHome != null && !cacheHome.isBlank()
+                ? Paths.get(cacheHome) : Paths.get(System.getProperty("user.home"), ".cache");
+    }
+
+    // Where this app keeps its own caches and logs
+    public static Path cacheDirectory() {
+        return cacheHome().resolve("fx-file-manager");
     }
 }
\ No newline at end of file
@@ -0,0 +1,418 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Computes the total size of folders in the background. Each directory is walked by
+ * its own fork/join task, without following symlinks or crossing into other
+ * filesystems. What every directory directly holds is cached by path together with
+ * the directory's mtime and saved between runs: a directory whose mtime is unchanged
+ * is not listed again, so a revisit only lists the subtrees that changed, and a
+ * cached total is shown at once while it is checked. Files with more than one hard
+ * link are counted once per folder, by device and inode.
+ */
+public class FolderSizes {
+
+    private static final int MAGIC = 0x46584653;
+    private static final int VERSION = 1;
+    private static final String UNIX_ATTRIBUTES = "unix:isDirectory,isSymbolicLink,size,nlink,ino,dev,lastModifiedTime";
+
+    public record FolderSize(Path folder, long bytes) {
+    }
+
+    // What one directory holds directly; linked files are stored as (dev, ino, size) triples
+    private record Node(long modified, long ownBytes, String[] children, long[] linked) {
+    }
+
+    private record Inode(long dev, long ino) {
+    }
+
+    private final ForkJoinPool pool = new ForkJoinPool(4, forkJoinPool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("folder-size");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }, null, false);
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "folder-sizes");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Path cacheFile;
+    private final boolean unix;
+    private boolean loaded;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private SizeTask currentTask;
+    private BatchPublisher<FolderSize> currentPublisher;
+
+    public FolderSizes() {
+        this.cacheFile = FileSystemUtils.cacheDirectory().resolve("folder-sizes.bin");
+        this.unix = Paths.get("").getFileSystem().supportedFileAttributeViews().contains("unix");
+    }
+
+    // Sizes arrive in batches on the FX thread, cached ones first; starting again cancels the previous run
+    public Task<Void> compute(List<Path> folders, Consumer<List<FolderSize>> onSizes) {
+        cancel();
+        BatchPublisher<FolderSize> publisher = new BatchPublisher<>(1000, onSizes);
+        SizeTask task = new SizeTask(List.copyOf(folders), publisher);
+        task.setOnSucceeded(_ -> {
+            publisher.flush();
+            finish(task);
+        });
+        task.setOnFailed(_ -> {
+            publisher.flush();
+            System.err.println("Folder sizes failed, Message: " + task.getException().getMessage());
+            finish(task);
+        });
+        currentTask = task;
+        currentPublisher = publisher;
+        coordinator.execute(task);
+        return task;
+    }
+
+    public void cancel() {
+        if (currentTask != null) {
+            currentTask.cancel();
+            currentPublisher.clear();
+            currentTask = null;
+            currentPublisher = null;
+        }
+    }
+
+    private void finish(SizeTask task) {
+        if (currentTask == task) {
+            currentTask = null;
+            currentPublisher = null;
+        }
+    }
+
+    private class SizeTask extends Task<Void> {
+        private final List<Path> folders;
+        private final BatchPublisher<FolderSize> publisher;
+
+        SizeTask(List<Path> folders, BatchPublisher<FolderSize> publisher) {
+            this.folders = folders;
+            this.publisher = publisher;
+        }
+
+        @Override
+        protected Void call() {
+            if (!loaded) {
+                loaded = true;
+                load();
+            }
+            long startNanos = System.nanoTime();
+            // Listed entries follow links, but a linked folder gets no size: walking it could cover
+            // another whole tree, or with a link to / the entire filesystem
+            List<Path> folders = new ArrayList<>(this.folders.size());
+            for (Path folder : this.folders) {
+                if (!Files.isSymbolicLink(folder)) {
+                    folders.add(folder);
+                }
+            }
+            // Instant answers from the cache for folders that haven't changed at the top
+            for (Path folder : folders) {
+                Node node = nodes.get(folder.toString());
+                if (node != null && node.modified() == modifiedOf(folder)) {
+                    publisher.offer(new FolderSize(folder, cachedTotal(folder)));
+                }
+            }
+            for (Path folder : folders) {
+                if (isCancelled()) {
+                    break;
+                }
+                Map<Inode, Long> linked = new ConcurrentHashMap<>();
+                try {
+                    long bytes = pool.invoke(new WalkTask(folder, -1, linked, this));
+                    for (long size : linked.values()) {
+                        bytes += size;
+                    }
+                    publisher.offer(new FolderSize(folder, bytes));
+                } catch (CancellationException e) {
+                    break;
+                }
+            }
+            if (!isCancelled()) {
+                System.out.printf("Sized %d folders in %.0f ms%n", folders.size(), (System.nanoTime() - startNanos) / 1e6);
+            }
+            if (dirty.getAndSet(false)) {
+                save();
+            }
+            return null;
+        }
+    }
+
+    // Sums one directory and everything below it, except hard-linked files, which are collected in linked
+    private class WalkTask extends RecursiveTask<Long> {
+        private final Path directory;
+        private final long parentDevice;
+        private final Map<Inode, Long> linked;
+        private final SizeTask owner;
+
+        WalkTask(Path directory, long parentDevice, Map<Inode, Long> linked, SizeTask owner) {
+            this.directory = directory;
+            this.parentDevice = parentDevice;
+            this.linked = linked;
+            this.owner = owner;
+        }
+
+        @Override
+        protected Long compute() {
+            if (owner.isCancelled()) {
+                throw new CancellationException();
+            }
+            String key = directory.toString();
+            Node node;
+            long device;
+            try {
+                Map<String, Object> attrs = readAttributes(directory);
+                device = attrs.get("dev") instanceof Long dev ? dev : 0;
+                if (Boolean.TRUE.equals(attrs.get("isSymbolicLink"))) {
+                    // Listing it would follow the link
+                    return 0L;
+                }
+                if (parentDevice != -1 && device != parentDevice) {
+                    // A mount point: its contents belong to another filesystem
+                    return 0L;
+                }
+                long modified = toNanos((FileTime) attrs.get("lastModifiedTime"));
+                node = nodes.get(key);
+                if (node == null || node.modified() != modified) {
+                    Node previous = node;
+                    node = list(modified);
+                    nodes.put(key, node);
+                    dirty.set(true);
+                    if (previous != null) {
+                        forgetRemoved(previous, node);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                forget(key);
+                return 0L;
+            } catch (IOException e) {
+                // Unreadable folders count as empty
+                return 0L;
+            }
+            long[] links = node.linked();
+            for (int i = 0; i < links.length; i += 3) {
+                linked.put(new Inode(links[i], links[i + 1]), links[i + 2]);
+            }
+            List<WalkTask> subdirectories = new ArrayList<>(node.children().length);
+            for (String child : node.children()) {
+                WalkTask task = new WalkTask(directory.resolve(child), device, linked, owner);
+                task.fork();
+                subdirectories.add(task);
+            }
+            long bytes = node.ownBytes();
+            for (WalkTask task : subdirectories) {
+                bytes += task.join();
+            }
+            return bytes;
+        }
+
+        private Node list(long modified) throws IOException {
+            long ownBytes = 0;
+            List<String> children = new ArrayList<>();
+            List<Long> links = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (owner.isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    Map<String, Object> attrs;
+                    try {
+                        attrs = readAttributes(child);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (Boolean.TRUE.equals(attrs.get("isSymbolicLink"))) {
+                        continue;
+                    }
+                    if (Boolean.TRUE.equals(attrs.get("isDirectory"))) {
+                        children.add(child.getFileName().toString());
+                        continue;
+                    }
+                    long size = (Long) attrs.get("size");
+                    if (attrs.get("nlink") instanceof Integer linkCount && linkCount > 1) {
+                        links.add((Long) attrs.get("dev"));
+                        links.add((Long) attrs.get("ino"));
+                        links.add(size);
+                    } else {
+                        ownBytes += size;
+                    }
+                }
+            }
+            long[] linkedArray = new long[links.size()];
+            for (int i = 0; i < linkedArray.length; i++) {
+                linkedArray[i] = links.get(i);
+            }
+            return new Node(modified, ownBytes, children.toArray(new String[0]), linkedArray);
+        }
+
+        // Drops cached subtrees for folders that are gone from this directory
+        private void forgetRemoved(Node previous, Node current) {
+            Set<String> remaining = Set.of(current.children());
+            for (String child : previous.children()) {
+                if (!remaining.contains(child)) {
+                    forget(directory.resolve(child).toString());
+                }
+            }
+        }
+    }
+
+    private Map<String, Object> readAttributes(Path path) throws IOException {
+        if (unix) {
+            return Files.readAttributes(path, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        return Map.of("isDirectory", attrs.isDirectory(), "isSymbolicLink", attrs.isSymbolicLink(),
+                "size", attrs.size(), "lastModifiedTime", attrs.lastModifiedTime());
+    }
+
+    private long modifiedOf(Path folder) {
+        try {
+            return toNanos(Files.getLastModifiedTime(folder, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long toNanos(FileTime time) {
+        return time.toInstant().getEpochSecond() * 1_000_000_000L + time.toInstant().getNano();
+    }
+
+    // The total as of the last walk, from memory only
+    private long cachedTotal(Path folder) {
+        long bytes = 0;
+        Set<Inode> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(folder.toString());
+        while (!pending.isEmpty()) {
+            String key = pending.pop();
+            Node node = nodes.get(key);
+            if (node == null) {
+                continue;
+            }
+            bytes += node.ownBytes();
+            long[] links = node.linked();
+            for (int i = 0; i < links.length; i += 3) {
+                if (seen.add(new Inode(links[i], links[i + 1]))) {
+                    bytes += links[i + 2];
+                }
+            }
+            for (String child : node.children()) {
+                pending.push(Paths.get(key).resolve(child).toString());
+            }
+        }
+        return bytes;
+    }
+
+    private void forget(String key) {
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(key);
+        while (!pending.isEmpty()) {
+            String next = pending.pop();
+            Node node = nodes.remove(next);
+            if (node != null) {
+                dirty.set(true);
+                for (String child : node.children()) {
+                    pending.push(Paths.get(next).resolve(child).toString());
+                }
+            }
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported folder size cache format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long modified = in.readLong();
+                long ownBytes = in.readLong();
+                String[] children = new String[in.readInt()];
+                for (int c = 0; c < children.length; c++) {
+                    children[c] = in.readUTF();
+                }
+                long[] linked = new long[in.readInt()];
+                for (int l = 0; l < linked.length; l++) {
+                    linked[l] = in.readLong();
+                }
+                nodes.put(key, new Node(modified, ownBytes, children, linked));
+            }
+            System.out.printf("Loaded folder size cache: %,d folders%n", count);
+        } catch (IOException e) {
+            System.err.println("Error loading folder size cache: " + cacheFile + ", Message: " + e.getMessage());
+            nodes.clear();
+        }
+    }
+
+    // Runs on the coordinator thread between walks, so no walk is changing the nodes
+    private void save() {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path temporary = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                List<Map.Entry<String, Node>> entries = new ArrayList<>(nodes.entrySet());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Node> entry : entries) {
+                    Node node = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(node.modified());
+                    out.writeLong(node.ownBytes());
+                    out.writeInt(node.children().length);
+                    for (String child : node.children()) {
+                        out.writeUTF(child);
+                    }
+                    out.writeInt(node.linked().length);
+                    for (long value : node.linked()) {
+                        out.writeLong(value);
+                    }
+                }
+            }
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving folder size cache: " + cacheFile + ", Message: " + e.getMessage());
+        }
+    }
+}
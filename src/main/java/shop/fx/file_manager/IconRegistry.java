@@ -0,0 +1,65 @@
+package shop.fx.file_manager;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes each icon resource once per display size and hands out the shared
+ * {@link Image}, so cells and menus never decode PNGs while rendering.
+ */
+public final class IconRegistry {
+
+    private static final Map<String, Image> images = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private IconRegistry() {
+    }
+
+    // Returns the icon from icons/<name> decoded to fit a size x size box
+    public static Image get(String name, int size) {
+        String key = name + "@" + size;
+        Image image = images.get(key);
+        if (image != null) {
+            hits.incrementAndGet();
+            return image;
+        }
+        misses.incrementAndGet();
+        return images.computeIfAbsent(key, _ -> load(name, size));
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static int getCachedCount() {
+        return images.size();
+    }
+
+    private static Image load(String name, int size) {
+        try (InputStream stream = IconRegistry.class.getResourceAsStream("icons/" + name)) {
+            if (stream == null) {
+                System.err.println("Missing icon resource: " + name);
+                return new WritableImage(size, size);
+            }
+            Image image = new Image(stream, size, size, true, true);
+            if (image.isError()) {
+                System.err.println("Failed to load " + name);
+            }
+            return image;
+        } catch (IOException e) {
+            System.err.println("Error reading icon: " + name + ", Message: " + e.getMessage());
+            return new WritableImage(size, size);
+        }
+    }
+}
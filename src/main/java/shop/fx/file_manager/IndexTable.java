@@ -0,0 +1,412 @@
+package shop.fx.file_manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory form of the filename index: a path table, where each entry stores its
+ * parent's id and its own name, plus trigram postings over the lowercased names.
+ * Ids are handed out in insertion order, so a parent always has a smaller id than its
+ * children and every postings list is ascending, which lets postings be stored as
+ * varint-encoded deltas. Removed entries are tombstoned until {@link #compact()}.
+ * Not thread safe; {@link FileIndex} does the locking.
+ */
+class IndexTable {
+
+    private static final int MAGIC = 0x46584958;
+    private static final int VERSION = 1;
+    private static final byte DIRECTORY = 1;
+
+    private int[] parents = new int[1024];
+    private String[] names = new String[1024];
+    private long[] modified = new long[1024];
+    private byte[] flags = new byte[1024];
+    private int count;
+    private int removed;
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Integer, IntList> children = new HashMap<>();
+    private final IntList roots = new IntList();
+
+    // modifiedMillis is only kept for directories; it tells a refresh whether to re-list them
+    int add(int parent, String name, boolean directory, long modifiedMillis) {
+        if (count == parents.length) {
+            int capacity = count + (count >> 1);
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        int id = count++;
+        parents[id] = parent;
+        names[id] = name;
+        modified[id] = modifiedMillis;
+        flags[id] = directory ? DIRECTORY : 0;
+        if (parent < 0) {
+            roots.add(id);
+        } else {
+            children.computeIfAbsent(parent, _ -> new IntList()).add(id);
+            String lowerName = name.toLowerCase();
+            for (int i = 0; i + 3 <= lowerName.length(); i++) {
+                postings.computeIfAbsent(trigram(lowerName, i), _ -> new Postings()).add(id);
+            }
+        }
+        return id;
+    }
+
+    // Tombstones the entry and everything below it
+    void remove(int id) {
+        if (!isLive(id)) {
+            return;
+        }
+        IntList siblings = parents[id] < 0 ? roots : children.get(parents[id]);
+        if (siblings != null) {
+            siblings.removeValue(id);
+        }
+        IntList pending = new IntList();
+        pending.add(id);
+        while (pending.size() > 0) {
+            int next = pending.removeLast();
+            names[next] = null;
+            removed++;
+            IntList below = children.remove(next);
+            if (below != null) {
+                for (int i = 0; i < below.size(); i++) {
+                    pending.add(below.get(i));
+                }
+            }
+        }
+    }
+
+    boolean isLive(int id) {
+        return names[id] != null;
+    }
+
+    boolean isDirectory(int id) {
+        return (flags[id] & DIRECTORY) != 0;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    long modified(int id) {
+        return modified[id];
+    }
+
+    void setModified(int id, long modifiedMillis) {
+        modified[id] = modifiedMillis;
+    }
+
+    int[] children(int id) {
+        IntList list = children.get(id);
+        return list != null ? list.toArray() : new int[0];
+    }
+
+    int[] roots() {
+        return roots.toArray();
+    }
+
+    int size() {
+        return count - removed;
+    }
+
+    int removedCount() {
+        return removed;
+    }
+
+    // Returns the id of an indexed path, or -1
+    int find(Path path) {
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = Paths.get(names[roots.get(i)]);
+            if (path.startsWith(root)) {
+                int id = roots.get(i);
+                Path relative = root.relativize(path);
+                for (int j = 0; id >= 0 && j < relative.getNameCount(); j++) {
+                    String name = relative.getName(j).toString();
+                    id = name.isEmpty() ? id : findChild(children.get(id), name);
+                }
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    Path path(int id) {
+        List<String> segments = new ArrayList<>();
+        for (int current = id; current >= 0; current = parents[current]) {
+            segments.add(names[current]);
+        }
+        Collections.reverse(segments);
+        Path path = Paths.get(segments.getFirst());
+        for (int i = 1; i < segments.size(); i++) {
+            path = path.resolve(segments.get(i));
+        }
+        return path;
+    }
+
+    // Ids of live entries whose lowercased name contains lowerQuery, in id order
+    int[] query(String lowerQuery, int limit) {
+        IntList result = new IntList();
+        if (lowerQuery.length() < 3) {
+            // Too short for a trigram: scan the names, which is still only memory access
+            for (int id = 0; id < count && result.size() < limit; id++) {
+                if (names[id] != null && parents[id] >= 0 && containsIgnoreCase(names[id], lowerQuery)) {
+                    result.add(id);
+                }
+            }
+            return result.toArray();
+        }
+        Set<Postings> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i + 3 <= lowerQuery.length(); i++) {
+            Postings list = postings.get(trigram(lowerQuery, i));
+            if (list == null) {
+                return new int[0];
+            }
+            unique.add(list);
+        }
+        List<Postings> lists = new ArrayList<>(unique);
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        int[] candidates = lists.getFirst().decode();
+        int size = candidates.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = lists.get(i).retain(candidates, size);
+        }
+        // Trigrams can match out of order, so confirm each candidate
+        for (int i = 0; i < size && result.size() < limit; i++) {
+            int id = candidates[i];
+            if (names[id] != null && names[id].toLowerCase().contains(lowerQuery)) {
+                result.add(id);
+            }
+        }
+        return result.toArray();
+    }
+
+    // A copy without tombstones
+    IndexTable compact() {
+        IndexTable table = new IndexTable();
+        int[] newIds = new int[count];
+        for (int id = 0; id < count; id++) {
+            if (names[id] != null) {
+                int parent = parents[id] < 0 ? -1 : newIds[parents[id]];
+                newIds[id] = table.add(parent, names[id], isDirectory(id), modified[id]);
+            }
+        }
+        return table;
+    }
+
+    // Only a compacted table can be written; tombstones have no name to store
+    void write(Path file) throws IOException {
+        if (removed > 0) {
+            throw new IllegalStateException("Compact the index before writing it");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            for (int id = 0; id < count; id++) {
+                out.writeInt(parents[id]);
+                out.writeByte(flags[id]);
+                out.writeLong(modified[id]);
+                out.writeUTF(names[id]);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<Long, Postings> entry : postings.entrySet()) {
+                Postings list = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeInt(list.count);
+                out.writeInt(list.last);
+                out.writeInt(list.length);
+                out.write(list.bytes, 0, list.length);
+            }
+        }
+    }
+
+    static IndexTable read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported index format: " + file);
+            }
+            IndexTable table = new IndexTable();
+            int count = in.readInt();
+            table.parents = new int[Math.max(count, 1024)];
+            table.names = new String[table.parents.length];
+            table.modified = new long[table.parents.length];
+            table.flags = new byte[table.parents.length];
+            for (int id = 0; id < count; id++) {
+                int parent = in.readInt();
+                table.parents[id] = parent;
+                table.flags[id] = in.readByte();
+                table.modified[id] = in.readLong();
+                table.names[id] = in.readUTF();
+                if (parent < 0) {
+                    table.roots.add(id);
+                } else {
+                    table.children.computeIfAbsent(parent, _ -> new IntList()).add(id);
+                }
+            }
+            table.count = count;
+            int postingsCount = in.readInt();
+            for (int i = 0; i < postingsCount; i++) {
+                long key = in.readLong();
+                Postings list = new Postings();
+                list.count = in.readInt();
+                list.last = in.readInt();
+                list.length = in.readInt();
+                list.bytes = new byte[Math.max(list.length, 4)];
+                in.readFully(list.bytes, 0, list.length);
+                table.postings.put(key, list);
+            }
+            return table;
+        }
+    }
+
+    private int findChild(IntList ids, String name) {
+        if (ids == null) {
+            return -1;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (name.equals(names[ids.get(i)])) {
+                return ids.get(i);
+            }
+        }
+        return -1;
+    }
+
+    private static long trigram(String lowerName, int index) {
+        return ((long) lowerName.charAt(index) << 32) | ((long) lowerName.charAt(index + 1) << 16) | lowerName.charAt(index + 2);
+    }
+
+    private static boolean containsIgnoreCase(String name, String lowerQuery) {
+        for (int i = 0; i + lowerQuery.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, lowerQuery, 0, lowerQuery.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Ascending ids stored as varint deltas; most deltas fit in one or two bytes
+    private static final class Postings {
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        void add(int id) {
+            if (id == last) {
+                // The same trigram twice in one name
+                return;
+            }
+            int delta = id - last;
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+            last = id;
+            count++;
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            int position = 0;
+            int value = -1;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                ids[i] = value;
+            }
+            return ids;
+        }
+
+        // Keeps the first size ids that are also in this list, in place; returns the new size
+        int retain(int[] ids, int size) {
+            int position = 0;
+            int value = -1;
+            int decoded = 0;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                while (value < ids[i] && decoded < count) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = bytes[position++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    value += delta;
+                    decoded++;
+                }
+                if (value == ids[i]) {
+                    ids[kept++] = ids[i];
+                } else if (value < ids[i]) {
+                    break;
+                }
+            }
+            return kept;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        void removeValue(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues file jobs and starts them when the devices they touch have a free slot. Each
+ * job occupies every physical disk under its paths, so two big copies onto the same
+ * hard disk run one after the other instead of seeking against each other, while jobs
+ * on different disks run side by side. Partitions of one disk count as one device.
+ * Rotational disks take one job at a time and solid-state disks two. Jobs are started
+ * in submission order; a job that has to wait keeps its devices reserved so later
+ * jobs can't starve it. No job is started while a directory listing is loading, and
+ * job threads run below normal priority. Jobs that only rename, such as moving to the
+ * trash, skip all of this and start right away.
+ *
+ * <p>All scheduler state is confined to the single dispatcher thread.
+ */
+public class JobScheduler {
+
+    private static final long INTERACTIVE_RECHECK_MILLIS = 50;
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "file-job");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private record Device(String name, int slots) {
+    }
+
+    private record QueuedJob(FileJob job, Set<Device> devices) {
+    }
+
+    private final List<QueuedJob> queue = new ArrayList<>();
+    private final Map<Device, Integer> running = new HashMap<>();
+    // Keyed by st_dev, so each filesystem is looked up in sysfs once
+    private final Map<Object, Device> devicesByFileSystem = new HashMap<>();
+    private final List<Future<?>> interactive = new ArrayList<>();
+    private boolean recheckScheduled;
+
+    public void submit(FileJob job) {
+        dispatcher.execute(() -> {
+            if (job.isMetadataOnly()) {
+                // Barely touches the disk, so it neither waits for nor holds a device
+                start(new QueuedJob(job, Set.of()));
+                return;
+            }
+            QueuedJob queued = new QueuedJob(job, devicesOf(job.getPaths()));
+            queue.add(queued);
+            dispatch();
+            if (queue.contains(queued)) {
+                job.setWaiting(waitingMessage(queued));
+            }
+        });
+    }
+
+    // Holds back queued jobs until the given interactive work, e.g. a listing, is done
+    public void prioritize(Future<?> work) {
+        Throttle.global().backOff();
+        dispatcher.execute(() -> interactive.add(work));
+    }
+
+    private void dispatch() {
+        interactive.removeIf(Future::isDone);
+        if (!interactive.isEmpty()) {
+            if (!recheckScheduled) {
+                recheckScheduled = true;
+                dispatcher.schedule(() -> {
+                    recheckScheduled = false;
+                    dispatch();
+                }, INTERACTIVE_RECHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        Set<Device> reserved = new HashSet<>();
+        for (Iterator<QueuedJob> iterator = queue.iterator(); iterator.hasNext(); ) {
+            QueuedJob queued = iterator.next();
+            if (queued.job().isDone()) {
+                // Cancelled while waiting
+                iterator.remove();
+                continue;
+            }
+            boolean free = true;
+            for (Device device : queued.devices()) {
+                if (reserved.contains(device) || running.getOrDefault(device, 0) >= device.slots()) {
+                    free = false;
+                    break;
+                }
+            }
+            if (!free) {
+                reserved.addAll(queued.devices());
+                continue;
+            }
+            iterator.remove();
+            start(queued);
+        }
+    }
+
+    private void start(QueuedJob queued) {
+        for (Device device : queued.devices()) {
+            running.merge(device, 1, Integer::sum);
+        }
+        System.out.println("Starting job: " + queued.job().getJobTitle() + " on " + queued.devices().stream().map(Device::name).toList());
+        workers.execute(() -> {
+            try {
+                queued.job().run();
+            } finally {
+                dispatcher.execute(() -> {
+                    for (Device device : queued.devices()) {
+                        running.merge(device, -1, Integer::sum);
+                    }
+                    dispatch();
+                    for (QueuedJob waiting : queue) {
+                        waiting.job().setWaiting(waitingMessage(waiting));
+                    }
+                });
+            }
+        });
+    }
+
+    private String waitingMessage(QueuedJob queued) {
+        List<String> busy = new ArrayList<>();
+        for (Device device : queued.devices()) {
+            if (running.getOrDefault(device, 0) > 0) {
+                busy.add(device.name());
+            }
+        }
+        return busy.isEmpty() ? "Queued" : "Queued — waiting for " + String.join(", ", busy);
+    }
+
+    private Set<Device> devicesOf(List<Path> paths) {
+        Set<Device> devices = new LinkedHashSet<>();
+        for (Path path : paths) {
+            Device device = deviceOf(path);
+            if (device != null) {
+                devices.add(device);
+            }
+        }
+        return devices;
+    }
+
+    private Device deviceOf(Path path) {
+        // A copy's target may not exist yet
+        Path existing = path.toAbsolutePath();
+        while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return null;
+        }
+        try {
+            Object fileSystemId;
+            try {
+                fileSystemId = Files.getAttribute(existing, "unix:dev", LinkOption.NOFOLLOW_LINKS);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                fileSystemId = Files.getFileStore(existing);
+            }
+            Device device = devicesByFileSystem.get(fileSystemId);
+            if (device == null) {
+                device = fileSystemId instanceof Long dev ? blockDevice(dev) : new Device(fileSystemId.toString(), 1);
+                devicesByFileSystem.put(fileSystemId, device);
+            }
+            return device;
+        } catch (IOException e) {
+            System.err.println("Cannot find device of: " + path + ", Message: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Maps a Linux st_dev to its whole disk, e.g. sda1 to sda, through /sys/dev/block
+    private static Device blockDevice(long dev) {
+        long major = ((dev >>> 8) & 0xfff) | ((dev >>> 32) & ~0xfffL);
+        long minor = (dev & 0xff) | ((dev >>> 12) & ~0xffL);
+        Path node = Paths.get("/sys/dev/block", major + ":" + minor);
+        try {
+            Path disk = node.toRealPath();
+            if (Files.exists(disk.resolve("partition"))) {
+                disk = disk.getParent();
+            }
+            String name = disk.getFileName().toString();
+            Path rotational = disk.resolve("queue").resolve("rotational");
+            boolean spinning = !Files.isReadable(rotational)
+                    || Files.readString(rotational, StandardCharsets.US_ASCII).trim().equals("1");
+            return new Device(name, spinning ? 1 : 2);
+        } catch (IOException e) {
+            // Not a block device, e.g. tmpfs or a network share
+            return new Device("dev " + major + ":" + minor, 1);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package shop.fx.file_manager;
+
+import java.nio.file.Path;
+
+/**
+ * A single change to a directory listing. {@code path} is the affected entry (the old
+ * path for a rename) and {@code entry} describes the entry as it is now, read when
+ * the change is created; it is null for removals.
+ */
+public record ListingChange(Kind kind, Path path, FileEntry entry) {
+
+    public enum Kind {
+        ADDED,
+        REMOVED,
+        RENAMED,
+        MODIFIED
+    }
+
+    public static ListingChange added(Path path) {
+        return new ListingChange(Kind.ADDED, path, FileEntry.of(path));
+    }
+
+    public static ListingChange removed(Path path) {
+        return new ListingChange(Kind.REMOVED, path, null);
+    }
+
+    public static ListingChange renamed(Path oldPath, Path newPath) {
+        return new ListingChange(Kind.RENAMED, oldPath, FileEntry.of(newPath));
+    }
+
+    public static ListingChange modified(Path path) {
+        return new ListingChange(Kind.MODIFIED, path, FileEntry.of(path));
+    }
+}
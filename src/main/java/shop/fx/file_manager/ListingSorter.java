@@ -0,0 +1,177 @@
+package shop.fx.file_manager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Orders listings with folders first, then by name, size, modification time or type.
+ * Names compare naturally ("file2" before "file10") and ignore case, through the sort
+ * key built once per entry.
+ *
+ * <p>Comparing strings is the slow part, so it happens once per listing: {@link #keysOf}
+ * puts the entries in name order, and an entry's position there is its name rank.
+ * Every sort after that packs folder-first, the field and the rank into one long per
+ * entry and sorts the longs; the rank both breaks ties by name and leads back to the
+ * entry. Large listings are sorted in parallel.
+ */
+public final class ListingSorter {
+
+    private static final int PARALLEL_THRESHOLD = 20_000;
+    private static final Comparator<FileEntry> BY_NAME = (a, b) -> {
+        int result = a.sortKey().compareTo(b.sortKey());
+        return result != 0 ? result : a.name().compareTo(b.name());
+    };
+
+    // An entry with its sort key and name built once, for putting a whole listing in name order
+    private record Keyed(String sortKey, String name, FileEntry entry) {
+    }
+
+    private static final Comparator<Keyed> KEYED_BY_NAME = Comparator.comparing(Keyed::sortKey).thenComparing(Keyed::name);
+
+    // The entries of one listing in name order, with each one's type rank; immutable
+    public static final class Keys {
+        private final FileEntry[] byName;
+        private final int[] typeRanks;
+
+        private Keys(FileEntry[] byName, int[] typeRanks) {
+            this.byName = byName;
+            this.typeRanks = typeRanks;
+        }
+    }
+
+    private ListingSorter() {
+    }
+
+    // Digit runs become a marker, their length and the digits without leading zeros,
+    // so plain string order puts shorter numbers first
+    public static String naturalKey(String lowerName) {
+        int length = lowerName.length();
+        StringBuilder key = null;
+        int i = 0;
+        while (i < length) {
+            char c = lowerName.charAt(i);
+            if (c < '0' || c > '9') {
+                if (key != null) {
+                    key.append(c);
+                }
+                i++;
+                continue;
+            }
+            if (key == null) {
+                key = new StringBuilder(length + 8).append(lowerName, 0, i);
+            }
+            int end = i;
+            while (end < length && lowerName.charAt(end) >= '0' && lowerName.charAt(end) <= '9') {
+                end++;
+            }
+            int start = i;
+            while (start < end - 1 && lowerName.charAt(start) == '0') {
+                start++;
+            }
+            key.append('0').append((char) (end - start)).append(lowerName, start, end);
+            i = end;
+        }
+        return key != null ? key.toString() : lowerName;
+    }
+
+    // The string comparisons for a listing, done once; safe to call from any thread
+    public static Keys keysOf(List<FileEntry> entries) {
+        Keyed[] keyed = new Keyed[entries.size()];
+        int count = 0;
+        for (FileEntry entry : entries) {
+            // Compact rows build their name on every call, so it is built once here and the key from it
+            String name = entry.name();
+            String sortKey = entry instanceof CompactListing.Row ? naturalKey(name.toLowerCase()) : entry.sortKey();
+            keyed[count++] = new Keyed(sortKey, name, entry);
+        }
+        if (keyed.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(keyed, KEYED_BY_NAME);
+        } else {
+            Arrays.sort(keyed, KEYED_BY_NAME);
+        }
+        FileEntry[] byName = new FileEntry[keyed.length];
+        for (int i = 0; i < keyed.length; i++) {
+            byName[i] = keyed[i].entry();
+        }
+        TreeSet<String> extensions = new TreeSet<>();
+        for (FileEntry entry : byName) {
+            extensions.add(entry.extension());
+        }
+        List<String> sortedExtensions = List.copyOf(extensions);
+        int[] typeRanks = new int[byName.length];
+        for (int i = 0; i < byName.length; i++) {
+            typeRanks[i] = Collections.binarySearch(sortedExtensions, byName[i].extension());
+        }
+        return new Keys(byName, typeRanks);
+    }
+
+    // Sorts a listing's entries by the given field using only primitive comparisons; safe to call from any thread
+    public static List<FileEntry> sort(Keys keys, SortField field, boolean descending) {
+        FileEntry[] byName = keys.byName;
+        int count = byName.length;
+        int rankBits = Math.max(1, 64 - Long.numberOfLeadingZeros(count));
+        int fieldBits = 62 - rankBits;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int rank = 0; rank < count; rank++) {
+            long value = fieldOf(keys, field, rank);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        // Ranges too wide for the bits left are coarsened; entries that end up equal keep name order
+        int shift = count == 0 ? 0 : Math.max(0, 64 - Long.numberOfLeadingZeros(max - min) - fieldBits);
+        long maxField = count == 0 ? 0 : (max - min) >>> shift;
+        long[] packed = new long[count];
+        for (int rank = 0; rank < count; rank++) {
+            long value = (fieldOf(keys, field, rank) - min) >>> shift;
+            long group = byName[rank].directory() ? 0 : 1;
+            long orderedValue = descending ? maxField - value : value;
+            long orderedRank = descending ? count - 1 - rank : rank;
+            packed[rank] = group << 62 | orderedValue << rankBits | orderedRank;
+        }
+        if (count >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(packed);
+        } else {
+            Arrays.sort(packed);
+        }
+        long rankMask = (1L << rankBits) - 1;
+        FileEntry[] sorted = new FileEntry[count];
+        for (int i = 0; i < count; i++) {
+            int orderedRank = (int) (packed[i] & rankMask);
+            sorted[i] = byName[descending ? count - 1 - orderedRank : orderedRank];
+        }
+        return Arrays.asList(sorted);
+    }
+
+    private static long fieldOf(Keys keys, SortField field, int rank) {
+        FileEntry entry = keys.byName[rank];
+        return switch (field) {
+            case NAME -> 0;
+            case SIZE -> Math.max(0, entry.size());
+            case MODIFIED -> entry.lastModified();
+            case TYPE -> keys.typeRanks[rank];
+        };
+    }
+
+    // The same order for single entries, e.g. to place new files in a sorted listing
+    public static Comparator<FileEntry> comparator(SortField field, boolean descending) {
+        return (a, b) -> {
+            if (a.directory() != b.directory()) {
+                return a.directory() ? -1 : 1;
+            }
+            int result = switch (field) {
+                case NAME -> 0;
+                case SIZE -> Long.compare(Math.max(0, a.size()), Math.max(0, b.size()));
+                case MODIFIED -> Long.compare(a.lastModified(), b.lastModified());
+                case TYPE -> a.extension().compareTo(b.extension());
+            };
+            if (result == 0) {
+                result = BY_NAME.compare(a, b);
+            }
+            return descending ? -result : result;
+        };
+    }
+}
@@ -0,0 +1,102 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The user-visible mounts on Linux, read from /proc/self/mountinfo. Reading it never
+ * touches the mounted filesystems themselves, so a dead network mount can't block
+ * it. Pseudo filesystems, squashfs and overlay layers other than /, mounts under
+ * /proc, /sys and /dev, runtime mounts under /run (except removable media in
+ * /run/media), bind mounts of subfolders and second mounts of the same device are
+ * left out.
+ */
+public class MountTable {
+
+    private static final Path MOUNTINFO = Paths.get("/proc/self/mountinfo");
+    private static final Set<String> PSEUDO_FILESYSTEMS = Set.of(
+            "proc", "sysfs", "devtmpfs", "devpts", "cgroup", "cgroup2", "securityfs", "pstore", "bpf",
+            "debugfs", "tracefs", "configfs", "fusectl", "mqueue", "hugetlbfs", "autofs", "binfmt_misc",
+            "rpc_pipefs", "nsfs", "efivarfs", "selinuxfs", "ramfs", "fuse.gvfsd-fuse", "fuse.portal", "fuse.lxcfs",
+            "nfsd");
+    // Snap packages and container layers, except as / itself on live, container and immutable systems
+    private static final Set<String> LAYER_FILESYSTEMS = Set.of("squashfs", "overlay");
+    private static final Path ROOT = Paths.get("/");
+    private static final List<Path> HIDDEN_PREFIXES = List.of(Paths.get("/proc"), Paths.get("/sys"), Paths.get("/dev"));
+
+    private MountTable() {
+    }
+
+    public static boolean isAvailable() {
+        return Files.isReadable(MOUNTINFO);
+    }
+
+    // The raw table, for cheap change detection
+    public static String snapshot() {
+        try {
+            return Files.readString(MOUNTINFO, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // Mount points in table order, so / comes first
+    public static List<Path> mountPoints(String table) {
+        List<Path> mountPoints = new ArrayList<>();
+        Set<String> devices = new HashSet<>();
+        for (String line : table.split("\n")) {
+            // id parent major:minor root mount-point options [optional...] - fstype source super-options
+            String[] fields = line.split(" ");
+            int separator = List.of(fields).indexOf("-");
+            if (fields.length < 5 || separator < 0 || separator + 1 >= fields.length) {
+                continue;
+            }
+            String device = fields[2];
+            String root = unescape(fields[3]);
+            Path mountPoint = Paths.get(unescape(fields[4]));
+            String type = fields[separator + 1];
+            if (!root.equals("/") || PSEUDO_FILESYSTEMS.contains(type) || isHidden(mountPoint)
+                    || (LAYER_FILESYSTEMS.contains(type) && !mountPoint.equals(ROOT))) {
+                continue;
+            }
+            if (devices.add(device)) {
+                mountPoints.add(mountPoint);
+            }
+        }
+        return mountPoints;
+    }
+
+    private static boolean isHidden(Path mountPoint) {
+        for (Path prefix : HIDDEN_PREFIXES) {
+            if (mountPoint.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return mountPoint.startsWith("/run") && !mountPoint.startsWith("/run/media");
+    }
+
+    // Spaces, tabs, newlines and backslashes are written as octal escapes, e.g. \040
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 3 < field.length()) {
+                result.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                i += 3;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves files and folders into a target folder. When source and target are on the
+ * same {@link java.nio.file.FileStore} the move is a single atomic rename, however big
+ * the tree. Across filesystems each file is copied, checked against the source's size,
+ * and only then deleted; folders are removed once they are empty, so a failure part
+ * way leaves every file in at least one place.
+ */
+public class MoveJob extends CopyJob {
+
+    public MoveJob(List<Path> sources, Path targetDirectory) {
+        super("Moving", sources, targetDirectory);
+    }
+
+    // Within one filesystem every item is a rename, unless it merges into an existing folder
+    @Override
+    public boolean isMetadataOnly() {
+        try {
+            FileStore target = Files.getFileStore(getTargetDirectory());
+            for (Path source : getSources()) {
+                if (!Files.getFileStore(source).equals(target)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        updateMessage("Preparing...");
+        List<Path> crossDevice = new ArrayList<>();
+        for (Path source : getSources()) {
+            checkpoint();
+            Path target = targetFor(source);
+            if (target.equals(source)) {
+                continue;
+            }
+            if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && target.startsWith(source)) {
+                addError("Cannot move a folder into itself: " + source);
+                continue;
+            }
+            throttle(0, 1);
+            if (rename(source, target)) {
+                addChange(ListingChange.removed(source));
+                addChange(ListingChange.added(target));
+            } else {
+                crossDevice.add(source);
+            }
+        }
+        if (!crossDevice.isEmpty()) {
+            copyAll(crossDevice);
+            for (Path source : crossDevice) {
+                if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                    addChange(ListingChange.removed(source));
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns false when the move needs a copy instead
+    private boolean rename(Path source, Path target) throws IOException {
+        if (!Files.getFileStore(source).equals(Files.getFileStore(getTargetDirectory()))) {
+            return false;
+        }
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Renamed: " + source + " to " + target);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+                // Merging into an existing folder goes file by file
+                return false;
+            }
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+    }
+
+    @Override
+    protected Path targetFor(Path source) {
+        return getTargetDirectory().resolve(source.getFileName().toString());
+    }
+
+    @Override
+    protected void fileCopied(Path source, Path target, long size, boolean link) throws IOException {
+        if (!link && Files.size(target) != size) {
+            throw new IOException("Copy of " + source + " is incomplete; the original was kept");
+        }
+        Files.delete(source);
+    }
+
+    @Override
+    protected void directoryCopied(Path source, Path target) throws IOException {
+        try {
+            Files.delete(source);
+        } catch (DirectoryNotEmptyException e) {
+            // Something below failed to move and was reported already
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package shop.fx.file_manager;
+
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Back/forward history of visited folders. Each entry can hold a {@link Snapshot} of how
+ * the folder looked when it was left, so going back shows the same rows, sorted, scrolled
+ * and selected as before without listing the directory again.
+ *
+ * <p>A snapshot's listing is only trusted while the folder is unchanged: it is watched
+ * through the {@link DirectoryWatcher} and the listing is dropped on the first change,
+ * keeping just the view state to re-apply after a fresh listing. Listings are bounded by
+ * an estimate of the heap they hold; the least recently used ones are dropped first, and
+ * if that isn't enough their view state goes too, leaving only the path.
+ */
+public class NavigationHistory implements DirectoryWatcher.Listener {
+
+    private static final long MAX_BYTES = 128L * 1024 * 1024;
+    // Larger selections aren't worth keeping; the folder is restored without one
+    private static final int MAX_SELECTION = 1000;
+    // Rough cost of the name order keys per entry, on top of the listing itself
+    private static final int KEY_BYTES = 12;
+    private static final int PATH_BYTES = 160;
+
+    /**
+     * How a folder was left. listing and keys are null when the rows weren't kept;
+     * firstVisible is the entry at the top of the view, or null.
+     */
+    public record Snapshot(List<FileEntry> listing, ListingSorter.Keys keys, SortField sortField, boolean sortDescending,
+                           Path firstVisible, List<Path> selection, String query, SearchScope scope) {
+
+        private Snapshot withoutListing() {
+            return new Snapshot(null, null, sortField, sortDescending, firstVisible, selection, query, scope);
+        }
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private Snapshot snapshot;
+        private long bytes;
+        private long lastUsed;
+
+        Entry(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final DirectoryWatcher watcher;
+    private final List<Entry> entries = new ArrayList<>();
+    private int index = -1;
+    private long totalBytes;
+    private long useCounter;
+
+    public NavigationHistory(DirectoryWatcher watcher) {
+        this.watcher = watcher;
+        watcher.addListener(this);
+    }
+
+    // The folder currently in the history, or null before the first visit or after clear
+    public synchronized Path current() {
+        return index >= 0 ? entries.get(index).path : null;
+    }
+
+    // Drops everything forward of the current entry and makes path the new current entry
+    public synchronized void visit(Path path) {
+        while (entries.size() > index + 1) {
+            release(entries.removeLast());
+        }
+        entries.add(new Entry(path));
+        index++;
+    }
+
+    // Steps back and returns the folder there, or null when already at the first entry
+    public synchronized Path back() {
+        if (index <= 0) {
+            return null;
+        }
+        index--;
+        return entries.get(index).path;
+    }
+
+    public synchronized boolean canGoForward() {
+        return index < entries.size() - 1;
+    }
+
+    // Steps forward and returns the folder there, or null when already at the last entry
+    public synchronized Path forward() {
+        if (index >= entries.size() - 1) {
+            return null;
+        }
+        index++;
+        return entries.get(index).path;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries) {
+            release(entry);
+        }
+        entries.clear();
+        index = -1;
+    }
+
+    // Stores how the current folder looks as it is left. The listing is kept only if the
+    // folder can be watched and fits the budget.
+    public synchronized void save(Snapshot snapshot) {
+        if (index < 0) {
+            return;
+        }
+        Entry entry = entries.get(index);
+        release(entry);
+        List<Path> selection = snapshot.selection().size() <= MAX_SELECTION ? List.copyOf(snapshot.selection()) : List.of();
+        Snapshot kept = new Snapshot(snapshot.listing(), snapshot.keys(), snapshot.sortField(), snapshot.sortDescending(),
+                snapshot.firstVisible(), selection, snapshot.query(), snapshot.scope());
+        long listingBytes = kept.listing() == null ? 0
+                : DirectoryCache.estimateBytes(kept.listing()) + (long) KEY_BYTES * kept.listing().size();
+        if (kept.listing() != null && (listingBytes > MAX_BYTES || !watcher.watch(entry.path))) {
+            kept = kept.withoutListing();
+            listingBytes = 0;
+        }
+        entry.snapshot = kept;
+        entry.bytes = listingBytes + (long) PATH_BYTES * (selection.size() + 1);
+        entry.lastUsed = ++useCounter;
+        totalBytes += entry.bytes;
+        evict(entry);
+    }
+
+    // Hands over the current entry's snapshot, if any; the entry no longer holds it afterwards
+    public synchronized Snapshot take() {
+        if (index < 0) {
+            return null;
+        }
+        Entry entry = entries.get(index);
+        Snapshot snapshot = entry.snapshot;
+        release(entry);
+        return snapshot;
+    }
+
+    // Drops the listings kept for a directory, keeping their view state
+    public synchronized void invalidate(Path directory) {
+        for (Entry entry : entries) {
+            if (entry.path.equals(directory)) {
+                dropListing(entry);
+            }
+        }
+    }
+
+    // Called on the watcher thread
+    @Override
+    public void onChange(Path directory, WatchEvent.Kind<?> kind, Path child) {
+        invalidate(directory);
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evict(Entry keep) {
+        // First listings, then whole snapshots, least recently used first
+        while (totalBytes > MAX_BYTES) {
+            Entry oldest = leastRecentlyUsed(keep, true);
+            if (oldest == null) {
+                break;
+            }
+            dropListing(oldest);
+        }
+        while (totalBytes > MAX_BYTES) {
+            Entry oldest = leastRecentlyUsed(keep, false);
+            if (oldest == null) {
+                break;
+            }
+            release(oldest);
+        }
+    }
+
+    private Entry leastRecentlyUsed(Entry keep, boolean withListing) {
+        Entry oldest = null;
+        for (Entry entry : entries) {
+            if (entry != keep && entry.snapshot != null && (!withListing || entry.snapshot.listing() != null)
+                    && (oldest == null || entry.lastUsed < oldest.lastUsed)) {
+                oldest = entry;
+            }
+        }
+        return oldest;
+    }
+
+    private void dropListing(Entry entry) {
+        if (entry.snapshot == null || entry.snapshot.listing() == null) {
+            return;
+        }
+        entry.snapshot = entry.snapshot.withoutListing();
+        totalBytes -= entry.bytes;
+        entry.bytes = (long) PATH_BYTES * (entry.snapshot.selection().size() + 1);
+        totalBytes += entry.bytes;
+        watcher.unwatch(entry.path);
+    }
+
+    private void release(Entry entry) {
+        dropListing(entry);
+        entry.snapshot = null;
+        totalBytes -= entry.bytes;
+        entry.bytes = 0;
+    }
+}
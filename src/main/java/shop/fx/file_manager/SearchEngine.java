@@ -0,0 +1,151 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Recursive filename search. Each directory is listed by its own fork/join task, so
+ * sibling subtrees are walked in parallel, and matches are streamed to the FX thread
+ * once per pulse while the walk continues. Symlinks are not followed.
+ */
+public class SearchEngine {
+
+    private static final int MAX_BATCH_SIZE = 2000;
+    private static final int PROGRESS_INTERVAL = 4096;
+
+    // Listing is I/O bound, so run more walkers than there are cores
+    private final ForkJoinPool pool = new ForkJoinPool(Math.min(16, 2 * Runtime.getRuntime().availableProcessors()));
+    private final ExecutorService coordinator = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SearchTask currentTask;
+    private BatchPublisher<FileEntry> currentPublisher;
+
+    public Task<Long> search(Path root, String query, Consumer<List<FileEntry>> onMatches, Runnable onDone) {
+        cancel();
+        BatchPublisher<FileEntry> publisher = new BatchPublisher<>(MAX_BATCH_SIZE, onMatches);
+        SearchTask task = new SearchTask(root, query.toLowerCase(), publisher);
+        task.setOnSucceeded(_ -> {
+            publisher.flush();
+            System.out.println("Search for \"" + query + "\" in " + root + ": " + task.getMessage());
+            finish(task);
+            if (onDone != null) {
+                onDone.run();
+            }
+        });
+        task.setOnFailed(_ -> {
+            publisher.flush();
+            System.err.println("Search failed in: " + root + ", Message: " + task.getException().getMessage());
+            finish(task);
+            if (onDone != null) {
+                onDone.run();
+            }
+        });
+        currentTask = task;
+        currentPublisher = publisher;
+        coordinator.execute(task);
+        return task;
+    }
+
+    public void cancel() {
+        if (currentTask != null) {
+            currentTask.cancel();
+            currentPublisher.clear();
+            currentTask = null;
+            currentPublisher = null;
+        }
+    }
+
+    public boolean isSearching() {
+        return currentTask != null;
+    }
+
+    private void finish(SearchTask task) {
+        if (currentTask == task) {
+            currentTask = null;
+            currentPublisher = null;
+        }
+    }
+
+    private class SearchTask extends Task<Long> {
+        private final Path root;
+        private final String query;
+        private final BatchPublisher<FileEntry> publisher;
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong matches = new AtomicLong();
+        private final AtomicLong unreadable = new AtomicLong();
+        private long startNanos;
+
+        SearchTask(Path root, String query, BatchPublisher<FileEntry> publisher) {
+            this.root = root;
+            this.query = query;
+            this.publisher = publisher;
+        }
+
+        @Override
+        protected Long call() {
+            startNanos = System.nanoTime();
+            updateMessage("Searching...");
+            pool.invoke(new ScanAction(root));
+            updateMessage(progressMessage() + (unreadable.get() > 0 ? ", " + unreadable.get() + " folders skipped" : ""));
+            return matches.get();
+        }
+
+        private String progressMessage() {
+            double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 0.001);
+            return String.format("%,d matches, scanned %,d entries (%,.0f/s)",
+                    matches.get(), scanned.get(), scanned.get() / seconds);
+        }
+
+        private class ScanAction extends RecursiveAction {
+            private final Path directory;
+
+            ScanAction(Path directory) {
+                this.directory = directory;
+            }
+
+            @Override
+            protected void compute() {
+                if (SearchTask.this.isCancelled()) {
+                    return;
+                }
+                List<ScanAction> subdirectories = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    for (Path child : stream) {
+                        if (SearchTask.this.isCancelled()) {
+                            return;
+                        }
+                        if (child.getFileName().toString().toLowerCase().contains(query)) {
+                            matches.incrementAndGet();
+                            publisher.offer(FileEntry.of(child));
+                        }
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                            subdirectories.add(new ScanAction(child));
+                        }
+                        if (scanned.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                            updateMessage(progressMessage());
+                        }
+                    }
+                } catch (IOException e) {
+                    unreadable.incrementAndGet();
+                }
+                invokeAll(subdirectories);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package shop.fx.file_manager;
+
+public enum SearchScope {
+    FOLDER("This folder"),
+    SUBFOLDERS("Subfolders"),
+    EVERYWHERE("All drives");
+
+    private final String displayName;
+
+    SearchScope(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,19 @@
+package shop.fx.file_manager;
+
+public enum SortField {
+    NAME("Name"),
+    SIZE("Size"),
+    MODIFIED("Modified"),
+    TYPE("Type");
+
+    private final String displayName;
+
+    SortField(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
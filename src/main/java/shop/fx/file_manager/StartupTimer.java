@@ -0,0 +1,90 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the phases of startup, from process start to the first frame and the deferred
+ * work after it. The report is printed once startup is done and appended as one line
+ * to $XDG_CACHE_HOME/fx-file-manager/startup.log, so a slower start shows up when
+ * compared with earlier runs.
+ */
+public final class StartupTimer {
+
+    // First paint should stay well below this
+    private static final long FIRST_FRAME_BUDGET_MILLIS = 500;
+
+    private record Phase(String name, long atNanos) {
+    }
+
+    private static final long startNanos = System.nanoTime();
+    private static final long jvmMillis = jvmStartupMillis();
+    private static final List<Phase> phases = new ArrayList<>();
+    private static long firstFrameMillis = -1;
+
+    private StartupTimer() {
+    }
+
+    // Marks the end of a phase; FX thread only, or main before the toolkit starts
+    public static void mark(String phase) {
+        phases.add(new Phase(phase, System.nanoTime()));
+    }
+
+    public static void markFirstFrame() {
+        mark("first frame");
+        firstFrameMillis = sinceProcessStartMillis(phases.getLast().atNanos());
+    }
+
+    // Time the JVM spent before this class was loaded, or 0 if the OS doesn't say
+    private static long jvmStartupMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Math.max(0, Duration.between(start, Instant.now()).toMillis()
+                        - (System.nanoTime() - startNanos) / 1_000_000))
+                .orElse(0L);
+    }
+
+    private static long sinceProcessStartMillis(long nanos) {
+        return jvmMillis + (nanos - startNanos) / 1_000_000;
+    }
+
+    // Prints the report and logs it in the background; FX thread, once the deferred startup work is done
+    public static void report() {
+        StringBuilder report = new StringBuilder("Startup timing (ms since process start):\n");
+        StringBuilder logLine = new StringBuilder(LocalDateTime.now().withNano(0).toString());
+        report.append(String.format("  %-28s %6d%n", "JVM and launcher", jvmMillis));
+        long previous = startNanos;
+        for (Phase phase : phases) {
+            report.append(String.format("  %-28s %6d  (+%d)%n", phase.name(), sinceProcessStartMillis(phase.atNanos()),
+                    (phase.atNanos() - previous) / 1_000_000));
+            logLine.append(' ').append(phase.name().replace(' ', '-')).append('=')
+                    .append(sinceProcessStartMillis(phase.atNanos()));
+            previous = phase.atNanos();
+        }
+        System.out.print(report);
+        if (firstFrameMillis > FIRST_FRAME_BUDGET_MILLIS) {
+            System.err.println("First frame took " + firstFrameMillis + " ms, over the " + FIRST_FRAME_BUDGET_MILLIS + " ms budget");
+        }
+        Thread writer = new Thread(() -> appendToLog(logLine.append('\n').toString()), "startup-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static void appendToLog(String line) {
+        Path logFile = FileSystemUtils.cacheDirectory().resolve("startup.log");
+        try {
+            Files.createDirectories(logFile.getParent());
+            Files.writeString(logFile, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Error writing startup log: " + e.getMessage());
+        }
+    }
+}
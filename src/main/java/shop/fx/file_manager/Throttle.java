@@ -0,0 +1,107 @@
+package shop.fx.file_manager;
+
+/**
+ * A token bucket for bytes and for I/O operations. Work takes its tokens up front and
+ * may leave the bucket in debt; the caller then waits {@link #delayNanos()} before
+ * the next unit. Either limit may be 0 for unlimited, and both can be changed while
+ * jobs are running. Each job has its own throttle and all jobs share
+ * {@link #global()}, which also backs off to a low rate for a moment whenever the
+ * user browses, so a long transfer doesn't slow down listing.
+ */
+public class Throttle {
+
+    private static final long BACKOFF_NANOS = 2_000_000_000L;
+    private static final double BACKOFF_BYTES_PER_SECOND = 8 * 1024 * 1024;
+    private static final double BACKOFF_OPS_PER_SECOND = 200;
+    private static final Throttle global = new Throttle();
+
+    private long bytesPerSecond;
+    private int opsPerSecond;
+    private double byteTokens;
+    private double opTokens;
+    private long lastRefillNanos = System.nanoTime();
+    private volatile long backOffUntilNanos = System.nanoTime();
+
+    public static Throttle global() {
+        return global;
+    }
+
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        refill();
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    public synchronized int getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    public synchronized void setOpsPerSecond(int opsPerSecond) {
+        refill();
+        this.opsPerSecond = Math.max(0, opsPerSecond);
+    }
+
+    // Drops to the backoff rate until the user has been idle for a moment
+    public void backOff() {
+        backOffUntilNanos = System.nanoTime() + BACKOFF_NANOS;
+    }
+
+    public synchronized boolean isLimited() {
+        return effectiveBytesPerSecond() > 0 || effectiveOpsPerSecond() > 0;
+    }
+
+    public synchronized void take(long bytes, int ops) {
+        refill();
+        if (effectiveBytesPerSecond() > 0) {
+            byteTokens -= bytes;
+        }
+        if (effectiveOpsPerSecond() > 0) {
+            opTokens -= ops;
+        }
+    }
+
+    // How long until the bucket is out of debt at the current rates; 0 if it isn't in debt
+    public synchronized long delayNanos() {
+        refill();
+        double seconds = 0;
+        double byteRate = effectiveBytesPerSecond();
+        if (byteRate > 0 && byteTokens < 0) {
+            seconds = -byteTokens / byteRate;
+        }
+        double opRate = effectiveOpsPerSecond();
+        if (opRate > 0 && opTokens < 0) {
+            seconds = Math.max(seconds, -opTokens / opRate);
+        }
+        return (long) (seconds * 1e9);
+    }
+
+    // At most one second's worth of tokens builds up while idle
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsed = (now - lastRefillNanos) / 1e9;
+        lastRefillNanos = now;
+        double byteRate = effectiveBytesPerSecond();
+        byteTokens = byteRate > 0 ? Math.min(byteRate, byteTokens + elapsed * byteRate) : 0;
+        double opRate = effectiveOpsPerSecond();
+        opTokens = opRate > 0 ? Math.min(opRate, opTokens + elapsed * opRate) : 0;
+    }
+
+    private double effectiveBytesPerSecond() {
+        long limit = bytesPerSecond;
+        if (System.nanoTime() - backOffUntilNanos < 0) {
+            return limit > 0 ? Math.min(limit, BACKOFF_BYTES_PER_SECOND) : BACKOFF_BYTES_PER_SECOND;
+        }
+        return limit;
+    }
+
+    private double effectiveOpsPerSecond() {
+        int limit = opsPerSecond;
+        if (System.nanoTime() - backOffUntilNanos < 0) {
+            return limit > 0 ? Math.min(limit, BACKOFF_OPS_PER_SECOND) : BACKOFF_OPS_PER_SECOND;
+        }
+        return limit;
+    }
+}
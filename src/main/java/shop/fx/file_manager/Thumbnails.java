@@ -0,0 +1,327 @@
+package shop.fx.file_manager;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Image thumbnails for the file list, decoded on a small pool of low-priority threads.
+ * Images are read with source subsampling, so only about twice the thumbnail's pixels
+ * ever reach the heap however large the photo is. The newest request runs first, since
+ * that is the cell that just scrolled into view, and cells cancel their request when
+ * they are reused for another file.
+ *
+ * <p>Finished thumbnails are kept in a memory LRU bounded by pixel bytes, and in the
+ * shared freedesktop cache ($XDG_CACHE_HOME/thumbnails/normal, named by the MD5 of the
+ * file URI and checked against the file's mtime and size) so other apps and later runs
+ * can reuse them.
+ */
+public class Thumbnails {
+
+    // The freedesktop "normal" size
+    private static final int NORMAL_SIZE = 128;
+    private static final long MEMORY_BUDGET_BYTES = 24L * 1024 * 1024;
+    // Formats the JDK can decode without plugins
+    private static final Set<String> EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp", "wbmp", "tif", "tiff");
+
+    // A queued thumbnail; newer requests sort first
+    public class Request implements Runnable, Comparable<Request> {
+        private final long sequence = sequences.incrementAndGet();
+        private final FileEntry entry;
+        private final int size;
+        private final String key;
+        private final Consumer<Image> onReady;
+        private volatile boolean cancelled;
+
+        private Request(FileEntry entry, int size, String key, Consumer<Image> onReady) {
+            this.entry = entry;
+            this.size = size;
+            this.key = key;
+            this.onReady = onReady;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            return Long.compare(other.sequence, sequence);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                // Scrolled out of view before its turn
+                return;
+            }
+            Image image = cached(key);
+            if (image == null) {
+                image = load(entry, size);
+                if (image == null) {
+                    failed.add(key);
+                    return;
+                }
+                remember(key, image);
+            }
+            Image result = image;
+            Platform.runLater(() -> {
+                if (!cancelled) {
+                    onReady.accept(result);
+                }
+            });
+        }
+    }
+
+    private final AtomicLong sequences = new AtomicLong();
+    private final ThreadPoolExecutor decoders;
+    private final Path cacheDirectory;
+    private final Map<String, Image> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    public Thumbnails() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        this.decoders = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        decoders.allowCoreThreadTimeOut(true);
+        this.cacheDirectory = FileSystemUtils.cacheHome().resolve("thumbnails").resolve("normal");
+    }
+
+    public static boolean supports(FileEntry entry) {
+        return !entry.directory() && entry.access() == FileEntry.Access.READABLE && entry.size() > 0
+                && EXTENSIONS.contains(entry.extension());
+    }
+
+    // The thumbnail if it is in memory already; FX thread
+    public Image cached(FileEntry entry, int size) {
+        return cached(keyOf(entry, size));
+    }
+
+    // Queues a thumbnail at most size pixels across; onReady runs on the FX thread unless cancelled first.
+    // Returns null if this file is known not to decode.
+    public Request request(FileEntry entry, int size, Consumer<Image> onReady) {
+        String key = keyOf(entry, size);
+        if (failed.contains(key)) {
+            return null;
+        }
+        Request request = new Request(entry, size, key, onReady);
+        decoders.execute(request);
+        return request;
+    }
+
+    private static String keyOf(FileEntry entry, int size) {
+        return entry.path() + "|" + entry.lastModified() + "|" + entry.size() + "|" + size;
+    }
+
+    private synchronized Image cached(String key) {
+        return memory.get(key);
+    }
+
+    private synchronized void remember(String key, Image image) {
+        if (memory.put(key, image) == null) {
+            memoryBytes += bytesOf(image);
+        }
+        Iterator<Image> eldest = memory.values().iterator();
+        while (memoryBytes > MEMORY_BUDGET_BYTES && eldest.hasNext()) {
+            memoryBytes -= bytesOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long bytesOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    private Image load(FileEntry entry, int size) {
+        String uri = entry.path().toAbsolutePath().toUri().toString();
+        Path cacheFile = cacheDirectory.resolve(md5(uri) + ".png");
+        BufferedImage thumbnail = readCached(cacheFile, entry);
+        if (thumbnail == null) {
+            try {
+                BufferedImage decoded = decodeSubsampled(entry.path());
+                if (decoded == null) {
+                    return null;
+                }
+                boolean large = decoded.getWidth() > NORMAL_SIZE || decoded.getHeight() > NORMAL_SIZE;
+                thumbnail = scale(decoded, NORMAL_SIZE);
+                if (large && !entry.path().startsWith(cacheDirectory.getParent())) {
+                    // Small images are their own thumbnail, so only larger ones are worth a cache file
+                    writeCached(cacheFile, thumbnail, uri, entry);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error creating thumbnail for: " + entry.path() + ", Message: " + e.getMessage());
+                return null;
+            }
+        }
+        return toFxImage(scale(thumbnail, size));
+    }
+
+    // Reads every step-th pixel of every step-th row, so the decoded image is 1-2x the normal size
+    private static BufferedImage decodeSubsampled(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / NORMAL_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int size) {
+        double factor = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        if (factor == 1.0 && image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static Image toFxImage(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        WritableImage result = new WritableImage(width, height);
+        result.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return result;
+    }
+
+    // A cached thumbnail only counts if it was made from this version of the file
+    private static BufferedImage readCached(Path cacheFile, FileEntry entry) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(cacheFile.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                Map<String, String> text = textEntries(reader.getImageMetadata(0));
+                String size = text.get("Thumb::Size");
+                if (!String.valueOf(entry.lastModified() / 1000).equals(text.get("Thumb::MTime"))
+                        || (size != null && !size.equals(String.valueOf(entry.size())))) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> textEntries(IIOMetadata metadata) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        org.w3c.dom.Node root = metadata.getAsTree("javax_imageio_png_1.0");
+        for (org.w3c.dom.Node chunk = root.getFirstChild(); chunk != null; chunk = chunk.getNextSibling()) {
+            if (!chunk.getNodeName().equals("tEXt")) {
+                continue;
+            }
+            for (org.w3c.dom.Node text = chunk.getFirstChild(); text != null; text = text.getNextSibling()) {
+                IIOMetadataNode node = (IIOMetadataNode) text;
+                entries.put(node.getAttribute("keyword"), node.getAttribute("value"));
+            }
+        }
+        return entries;
+    }
+
+    // Written to a temporary file and moved into place, as the spec asks, so readers never see half a file
+    private static void writeCached(Path cacheFile, BufferedImage thumbnail, String uri, FileEntry entry) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        Path temp = Files.createTempFile(cacheFile.getParent(), "thumbnail", ".png");
+        try {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(thumbnail), null);
+            IIOMetadataNode text = new IIOMetadataNode("tEXt");
+            text.appendChild(textEntry("Thumb::URI", uri));
+            text.appendChild(textEntry("Thumb::MTime", String.valueOf(entry.lastModified() / 1000)));
+            text.appendChild(textEntry("Thumb::Size", String.valueOf(entry.size())));
+            IIOMetadataNode root = new IIOMetadataNode("javax_imageio_png_1.0");
+            root.appendChild(text);
+            metadata.mergeTree("javax_imageio_png_1.0", root);
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(thumbnail, null, metadata), null);
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static IIOMetadataNode textEntry(String keyword, String value) {
+        IIOMetadataNode entry = new IIOMetadataNode("tEXtEntry");
+        entry.setAttribute("keyword", keyword);
+        entry.setAttribute("value", value);
+        return entry;
+    }
+
+    private static String md5(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package shop.fx.file_manager;
+
+import javafx.concurrent.Worker;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.util.StringConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.prefs.Preferences;
+
+/**
+ * The jobs panel: one row per queued or running file job with its progress,
+ * throughput and ETA, bandwidth and IOPS limits, plus pause and cancel buttons, under
+ * a count of running and queued jobs and the limits shared by all jobs. Rows
+ * disappear when their job finishes; the panel takes no space while it is empty.
+ */
+public class TransferPanel extends VBox {
+
+    private static final long MB = 1024 * 1024;
+    private static final List<Long> BANDWIDTH_LIMITS = List.of(0L, 200 * MB, 100 * MB, 50 * MB, 20 * MB, 10 * MB, 5 * MB, MB);
+    private static final List<Integer> IOPS_LIMITS = List.of(0, 2000, 1000, 500, 200, 100, 50);
+    private static final String GLOBAL_BANDWIDTH_KEY = "shop.fx.file_manager.global_bytes_per_second";
+    private static final String GLOBAL_IOPS_KEY = "shop.fx.file_manager.global_ops_per_second";
+    private static final Preferences prefs = Preferences.userNodeForPackage(TransferPanel.class);
+
+    private final Label summary = new Label();
+    private final List<FileJob> jobs = new ArrayList<>();
+
+    public TransferPanel() {
+        super(6);
+        getStyleClass().add("transfer-panel");
+        summary.getStyleClass().add("transfer-summary");
+
+        Throttle global = Throttle.global();
+        global.setBytesPerSecond(prefs.getLong(GLOBAL_BANDWIDTH_KEY, 0));
+        global.setOpsPerSecond(prefs.getInt(GLOBAL_IOPS_KEY, 0));
+        Label allJobs = new Label("All jobs:");
+        allJobs.getStyleClass().add("transfer-summary");
+        ChoiceBox<Long> bandwidth = bandwidthBox(global);
+        bandwidth.valueProperty().addListener((_, _, limit) -> prefs.putLong(GLOBAL_BANDWIDTH_KEY, limit));
+        ChoiceBox<Integer> iops = iopsBox(global);
+        iops.valueProperty().addListener((_, _, limit) -> prefs.putInt(GLOBAL_IOPS_KEY, limit));
+
+        Region spacer = new Region();
+        HBox header = new HBox(10, summary, spacer, allJobs, bandwidth, iops);
+        header.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        getChildren().add(header);
+        setVisible(false);
+        setManaged(false);
+    }
+
+    public void addJob(FileJob job) {
+        Label title = new Label();
+        title.getStyleClass().add("transfer-title");
+        title.textProperty().bind(job.titleProperty());
+
+        Button pauseButton = new Button("Pause");
+        pauseButton.getStyleClass().add("transfer-button");
+        pauseButton.setOnAction(_ -> {
+            if (job.isPaused()) {
+                job.resume();
+                pauseButton.setText("Pause");
+            } else {
+                job.pause();
+                pauseButton.setText("Resume");
+            }
+        });
+
+        Button cancelButton = new Button("Cancel");
+        cancelButton.getStyleClass().add("transfer-button");
+        cancelButton.setOnAction(_ -> job.cancel());
+
+        Region spacer = new Region();
+        HBox top = new HBox(10, title, spacer, bandwidthBox(job.getThrottle()), iopsBox(job.getThrottle()),
+                pauseButton, cancelButton);
+        top.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        ProgressBar progress = new ProgressBar();
+        progress.getStyleClass().add("transfer-progress");
+        progress.setMaxWidth(Double.MAX_VALUE);
+        progress.progressProperty().bind(job.progressProperty());
+
+        Label message = new Label();
+        message.getStyleClass().add("transfer-message");
+        message.textProperty().bind(job.messageProperty());
+
+        VBox row = new VBox(4, top, progress, message);
+        row.getStyleClass().add("transfer-row");
+        getChildren().add(row);
+        jobs.add(job);
+        update();
+
+        job.stateProperty().addListener((_, _, state) -> {
+            if (state == Worker.State.SUCCEEDED || state == Worker.State.FAILED || state == Worker.State.CANCELLED) {
+                getChildren().remove(row);
+                jobs.remove(job);
+            }
+            update();
+        });
+    }
+
+    // Changes apply to the running job right away
+    private static ChoiceBox<Long> bandwidthBox(Throttle throttle) {
+        ChoiceBox<Long> box = new ChoiceBox<>();
+        box.getStyleClass().add("transfer-limit");
+        box.getItems().addAll(BANDWIDTH_LIMITS);
+        if (!box.getItems().contains(throttle.getBytesPerSecond())) {
+            box.getItems().add(throttle.getBytesPerSecond());
+        }
+        box.setConverter(labels(limit -> limit == null || limit == 0 ? "Any speed" : FileSystemUtils.formatBytes(limit) + "/s"));
+        box.setValue(throttle.getBytesPerSecond());
+        box.valueProperty().addListener((_, _, limit) -> throttle.setBytesPerSecond(limit));
+        return box;
+    }
+
+    private static ChoiceBox<Integer> iopsBox(Throttle throttle) {
+        ChoiceBox<Integer> box = new ChoiceBox<>();
+        box.getStyleClass().add("transfer-limit");
+        box.getItems().addAll(IOPS_LIMITS);
+        if (!box.getItems().contains(throttle.getOpsPerSecond())) {
+            box.getItems().add(throttle.getOpsPerSecond());
+        }
+        box.setConverter(labels(limit -> limit == null || limit == 0 ? "Any IOPS" : limit + " IOPS"));
+        box.setValue(throttle.getOpsPerSecond());
+        box.valueProperty().addListener((_, _, limit) -> throttle.setOpsPerSecond(limit));
+        return box;
+    }
+
+    // Display-only labels for a choice box, which never parses text back
+    private static <T> StringConverter<T> labels(Function<T, String> label) {
+        return new StringConverter<>() {
+            @Override
+            public String toString(T value) {
+                return label.apply(value);
+            }
+
+            @Override
+            public T fromString(String text) {
+                return null;
+            }
+        };
+    }
+
+    private void update() {
+        int queued = 0;
+        for (FileJob job : jobs) {
+            // The scheduler hasn't started it yet
+            if (job.getState() == Worker.State.READY) {
+                queued++;
+            }
+        }
+        int running = jobs.size() - queued;
+        summary.setText(queued == 0 ? running + " running" : running + " running, " + queued + " queued");
+        boolean empty = jobs.isEmpty();
+        setVisible(!empty);
+        setManaged(!empty);
+    }
+}
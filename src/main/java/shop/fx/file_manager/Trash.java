@@ -0,0 +1,208 @@
+package shop.fx.file_manager;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves items to the trash following the freedesktop.org Trash specification, so
+ * other desktop tools can list and restore them. An item is renamed into the trash
+ * of its own filesystem: the home trash ($XDG_DATA_HOME/Trash) when it lives on the
+ * same filesystem as the home folder, otherwise $topdir/.Trash/$uid or
+ * $topdir/.Trash-$uid. A rename never copies data, so trashing a tree of any size
+ * takes the same time. Where there is no Unix filesystem, the desktop's own trash
+ * is used instead.
+ */
+public class Trash {
+
+    private static final DateTimeFormatter DELETION_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final boolean UNIX = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    // Every trash directory used this session, so emptying the trash can find them again
+    private static final Set<Path> usedTrashDirectories = ConcurrentHashMap.newKeySet();
+
+    private Trash() {
+    }
+
+    public static boolean isSupported() {
+        return UNIX || (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.MOVE_TO_TRASH));
+    }
+
+    // Only freedesktop trashes can be found and emptied by this app
+    public static boolean canEmpty() {
+        return UNIX;
+    }
+
+    public static void moveToTrash(Path path) throws IOException {
+        if (!UNIX) {
+            if (!isSupported() || !Desktop.getDesktop().moveToTrash(path.toFile())) {
+                throw new IOException("Cannot move to trash: " + path);
+            }
+            return;
+        }
+        Path absolute = path.toAbsolutePath().normalize();
+        FileStore store = Files.getFileStore(absolute);
+        Path homeTrash = homeTrash();
+        Path trashDirectory;
+        String infoPath;
+        if (store.equals(Files.getFileStore(Paths.get(System.getProperty("user.home"))))) {
+            trashDirectory = homeTrash;
+            infoPath = absolute.toString();
+        } else {
+            Path topDirectory = mountPoint(absolute, store);
+            trashDirectory = topDirectoryTrash(topDirectory);
+            // Trashes on other filesystems record paths relative to their top directory
+            infoPath = topDirectory.relativize(absolute).toString();
+        }
+        Path files = trashDirectory.resolve("files");
+        Path info = trashDirectory.resolve("info");
+        createPrivateDirectories(files);
+        createPrivateDirectories(info);
+        usedTrashDirectories.add(trashDirectory);
+
+        // Claiming the .trashinfo name with CREATE_NEW reserves the name in files/ as well
+        String baseName = absolute.getFileName().toString();
+        String name = baseName;
+        Path infoFile;
+        for (int counter = 2; ; counter++) {
+            infoFile = info.resolve(name + ".trashinfo");
+            try (Writer writer = Files.newBufferedWriter(infoFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writer.write("[Trash Info]\n");
+                writer.write("Path=" + encode(infoPath) + "\n");
+                writer.write("DeletionDate=" + LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(DELETION_DATE) + "\n");
+                break;
+            } catch (FileAlreadyExistsException e) {
+                name = baseName + "." + counter;
+            }
+        }
+        try {
+            Files.move(absolute, files.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(infoFile);
+            throw e;
+        }
+    }
+
+    // The files/ and info/ folders of every trash we know about on these roots
+    public static List<Path> trashContents(List<Path> roots) {
+        Set<Path> directories = new LinkedHashSet<>();
+        directories.addAll(usedTrashDirectories);
+        if (UNIX) {
+            directories.add(homeTrash());
+            String uid = uid();
+            for (Path root : roots) {
+                directories.add(root.resolve(".Trash").resolve(uid));
+                directories.add(root.resolve(".Trash-" + uid));
+            }
+        }
+        // Files first, so an interrupted purge leaves stale info files rather than untracked items
+        List<Path> contents = new ArrayList<>();
+        for (String part : List.of("files", "info")) {
+            for (Path directory : directories) {
+                Path folder = directory.resolve(part);
+                if (!Files.isDirectory(folder, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                    for (Path item : stream) {
+                        contents.add(item);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Cannot list trash: " + folder + ", Message: " + e.getMessage());
+                }
+            }
+        }
+        return contents;
+    }
+
+    private static Path homeTrash() {
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        Path base = dataHome != null && !dataHome.isBlank()
+                ? Paths.get(dataHome) : Paths.get(System.getProperty("user.home"), ".local", "share");
+        return base.resolve("Trash");
+    }
+
+    private static Path mountPoint(Path path, FileStore store) throws IOException {
+        Path mountPoint = path;
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (!store.equals(Files.getFileStore(parent))) {
+                break;
+            }
+            mountPoint = parent;
+        }
+        return mountPoint;
+    }
+
+    private static Path topDirectoryTrash(Path topDirectory) throws IOException {
+        String uid = uid();
+        // An admin-created $topdir/.Trash is only trusted if it is a real, sticky directory
+        Path shared = topDirectory.resolve(".Trash");
+        if (Files.isDirectory(shared, LinkOption.NOFOLLOW_LINKS) && isSticky(shared)) {
+            Path userTrash = shared.resolve(uid);
+            try {
+                createPrivateDirectories(userTrash);
+                return userTrash;
+            } catch (IOException e) {
+                // Fall back to $topdir/.Trash-$uid
+            }
+        }
+        return topDirectory.resolve(".Trash-" + uid);
+    }
+
+    private static boolean isSticky(Path directory) {
+        try {
+            int mode = (Integer) Files.getAttribute(directory, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 01000) != 0;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static String uid() {
+        try {
+            return String.valueOf(Files.getAttribute(Paths.get(System.getProperty("user.home")), "unix:uid"));
+        } catch (IOException | UnsupportedOperationException e) {
+            return System.getProperty("user.name");
+        }
+    }
+
+    private static void createPrivateDirectories(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+    }
+
+    // Percent-encodes everything but unreserved characters and '/', as the spec asks for URL-style escaping
+    private static String encode(String path) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            int c = b & 0xFF;
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '/' || c == '-' || c == '_' || c == '.' || c == '~') {
+                encoded.append((char) c);
+            } else {
+                encoded.append('%').append(String.format("%02X", c));
+            }
+        }
+        return encoded.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package shop.fx.file_manager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Moves items to the {@link Trash}. Each item is a single rename, so the job is over
+ * almost as soon as it starts, however large the trees are.
+ */
+public class TrashJob extends FileJob {
+
+    private final List<Path> paths;
+
+    public TrashJob(List<Path> paths) {
+        super(paths.size() == 1 ? "Moving " + paths.getFirst().getFileName() + " to trash" : "Moving " + paths.size() + " items to trash");
+        this.paths = List.copyOf(paths);
+    }
+
+    @Override
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    // The trash is always on the item's own filesystem
+    @Override
+    public boolean isMetadataOnly() {
+        return true;
+    }
+
+    @Override
+    protected Void call() {
+        setTotals(-1, paths.size());
+        for (Path path : paths) {
+            checkpoint();
+            try {
+                Trash.moveToTrash(path);
+                addChange(ListingChange.removed(path));
+                addFile();
+            } catch (IOException e) {
+                addError("Cannot move " + path + " to trash: " + e.getMessage());
+            }
+        }
+        report(true);
+        return null;
+    }
+}
@@ -0,0 +1,210 @@
+package shop.fx.file_manager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Folder sizes of a whole volume in parallel primitive arrays, one slot per folder and
+ * none per file: files only add to their folder's byte and file counts, and names are
+ * packed into a single UTF-8 byte array. Children are linked through first-child and
+ * next-sibling indexes. A folder is always added after its parent, so totals are
+ * summed bottom-up in one reverse pass. The largest files are kept separately in a
+ * bounded heap.
+ *
+ * <p>Adding is thread-safe; reading is only safe once {@link #finish()} has run.
+ */
+public class UsageTree {
+
+    public static final int ROOT = 0;
+    private static final int TOP_FILES = 100;
+
+    public record LargeFile(int folder, String name, long size) {
+    }
+
+    private int count;
+    private int[] parent = new int[1024];
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private int[] nameStart = new int[1024];
+    private int[] nameLength = new int[1024];
+    private long[] ownBytes = new long[1024];
+    private long[] totalBytes = new long[1024];
+    private int[] files = new int[1024];
+    private int[] totalFiles = new int[1024];
+    private byte[] names = new byte[16 * 1024];
+    private int namesLength;
+    private final PriorityQueue<LargeFile> largeFiles = new PriorityQueue<>(Comparator.comparingLong(LargeFile::size));
+    private volatile long largeFileThreshold;
+    private final Path root;
+
+    public UsageTree(Path root) {
+        this.root = root;
+        add(-1, root.toString());
+    }
+
+    public synchronized int add(int parentId, String name) {
+        if (count == parent.length) {
+            int capacity = count * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            nameStart = Arrays.copyOf(nameStart, capacity);
+            nameLength = Arrays.copyOf(nameLength, capacity);
+            ownBytes = Arrays.copyOf(ownBytes, capacity);
+            totalBytes = Arrays.copyOf(totalBytes, capacity);
+            files = Arrays.copyOf(files, capacity);
+            totalFiles = Arrays.copyOf(totalFiles, capacity);
+        }
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        if (namesLength + encoded.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + encoded.length));
+        }
+        System.arraycopy(encoded, 0, names, namesLength, encoded.length);
+        int id = count++;
+        parent[id] = parentId;
+        nameStart[id] = namesLength;
+        nameLength[id] = encoded.length;
+        namesLength += encoded.length;
+        firstChild[id] = -1;
+        nextSibling[id] = -1;
+        if (parentId >= 0) {
+            nextSibling[id] = firstChild[parentId];
+            firstChild[parentId] = id;
+        }
+        return id;
+    }
+
+    // Adds the files directly in a folder, all at once
+    public synchronized void addFiles(int id, long bytes, int fileCount) {
+        ownBytes[id] += bytes;
+        files[id] += fileCount;
+    }
+
+    public synchronized void offerLargeFile(int folder, String name, long size) {
+        if (largeFiles.size() < TOP_FILES) {
+            largeFiles.add(new LargeFile(folder, name, size));
+        } else if (size > largeFiles.peek().size()) {
+            largeFiles.poll();
+            largeFiles.add(new LargeFile(folder, name, size));
+        }
+        if (largeFiles.size() == TOP_FILES) {
+            largeFileThreshold = largeFiles.peek().size();
+        }
+    }
+
+    // Smallest size that still makes the top list, so walkers can skip the lock for most files
+    public long largeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    // Sums totals bottom-up and trims the arrays
+    public synchronized void finish() {
+        System.arraycopy(ownBytes, 0, totalBytes, 0, count);
+        System.arraycopy(files, 0, totalFiles, 0, count);
+        for (int id = count - 1; id > 0; id--) {
+            totalBytes[parent[id]] += totalBytes[id];
+            totalFiles[parent[id]] += totalFiles[id];
+        }
+        names = Arrays.copyOf(names, namesLength);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String name(int id) {
+        return new String(names, nameStart[id], nameLength[id], StandardCharsets.UTF_8);
+    }
+
+    public Path path(int id) {
+        if (id == ROOT) {
+            return root;
+        }
+        return path(parent[id]).resolve(name(id));
+    }
+
+    public int parent(int id) {
+        return parent[id];
+    }
+
+    public long ownBytes(int id) {
+        return ownBytes[id];
+    }
+
+    public long totalBytes(int id) {
+        return totalBytes[id];
+    }
+
+    public int totalFiles(int id) {
+        return totalFiles[id];
+    }
+
+    // Largest first
+    public List<Integer> children(int id) {
+        List<Integer> children = new ArrayList<>();
+        for (int child = firstChild[id]; child >= 0; child = nextSibling[child]) {
+            children.add(child);
+        }
+        children.sort((a, b) -> Long.compare(totalBytes[b], totalBytes[a]));
+        return children;
+    }
+
+    // Folders below id holding the most data directly, largest first
+    public List<Integer> largestFolders(int id, int limit) {
+        PriorityQueue<Integer> top = new PriorityQueue<>(Comparator.comparingLong(folder -> ownBytes[folder]));
+        int[] stack = new int[64];
+        int depth = 0;
+        stack[depth++] = id;
+        while (depth > 0) {
+            int folder = stack[--depth];
+            top.add(folder);
+            if (top.size() > limit) {
+                top.poll();
+            }
+            for (int child = firstChild[folder]; child >= 0; child = nextSibling[child]) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = child;
+            }
+        }
+        List<Integer> folders = new ArrayList<>(top);
+        folders.sort((a, b) -> Long.compare(ownBytes[b], ownBytes[a]));
+        return folders;
+    }
+
+    // Largest files in the volume that lie below id, largest first
+    public List<LargeFile> largestFiles(int id) {
+        List<LargeFile> result = new ArrayList<>();
+        for (LargeFile file : largeFiles) {
+            if (isWithin(file.folder(), id)) {
+                result.add(file);
+            }
+        }
+        result.sort((a, b) -> Long.compare(b.size(), a.size()));
+        return result;
+    }
+
+    private boolean isWithin(int folder, int ancestor) {
+        for (int id = folder; id >= 0; id = parent[id]) {
+            if (id == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Bytes held by the arrays, for the memory report
+    public long footprint() {
+        return (long) parent.length * (7 * Integer.BYTES + 2 * Long.BYTES) + names.length;
+    }
+}